@@ -0,0 +1,77 @@
+package fr.uge.ugegreed;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Découpage d'une conjecture entre children fils simulés, comme Application.dispatch : chaque fils
+ * affamé reçoit sa part guidée (RangePool.share), calcule sa plage puis en redemande une. Les fils
+ * ont des capacités différentes et un fils sur quatre se fait voler la moitié de son travail.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    private static final int CHUNK_SIZE = 25;
+
+    @Param({ "1", "4", "16", "64" })
+    public int children;
+
+    @Param({ "1000000" })
+    public int values;
+
+    @Benchmark
+    public long split() {
+        var pool = new RangePool();
+        pool.add(new FrameConjecture(1, 1, 1, 1, 1, values, "Collatz.jar", "fr.uge.collatz.Collatz", "results.txt"));
+        var weights = new double[children];
+        var pending = new long[children];
+        var weightSum = 0.0;
+        for (var i = 0; i < children; i++) {
+            weights[i] = 1 + i % 4;
+            weightSum += weights[i];
+        }
+        var frames = 0L;
+        while (!pool.isEmpty()) {
+            var distributed = 0L;
+            for (var i = 0; i < children; i++) {
+                distributed += pending[i];
+            }
+            for (var i = 0; i < children && !pool.isEmpty(); i++) {
+                if (pending[i] > 0) {
+                    continue;
+                }
+                var grant = pool.take(pool.share(distributed - pending[i], weights[i], weightSum, 0, CHUNK_SIZE));
+                pending[i] = grant.end() - grant.start() + 1;
+                distributed += pending[i];
+                frames++;
+                if (i % 4 == 3) {
+                    var stealer = new RangePool();
+                    stealer.add(grant);
+                    for (var stolen : stealer.stealHalf()) {
+                        pool.add(stolen);
+                        frames++;
+                    }
+                    pending[i] = stealer.remaining();
+                }
+            }
+            for (var i = 0; i < children; i++) {
+                pending[i] = Math.max(0, pending[i] - (long) weights[i] * CHUNK_SIZE * 4);
+            }
+        }
+        return frames;
+    }
+}
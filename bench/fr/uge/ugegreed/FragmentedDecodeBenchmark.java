@@ -0,0 +1,108 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Décodage d'un flux de trames reçu par morceaux de fragment octets, avec la même boucle que
+ * Context.processIn : chemin rapide sur les trames complètes, readers incrémentaux sinon.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FragmentedDecodeBenchmark {
+    private static final int FRAMES = 64;
+
+    @Param({ "1", "7", "64", "1024", "16384" })
+    public int fragment;
+
+    private ByteBuffer stream;
+    private final ByteBuffer bufferIn = ByteBuffer.allocateDirect(16 * 1_024);
+    private final FrameConjectureReader frameConjectureReader = new FrameConjectureReader();
+    private final FrameResultReader frameResultReader = new FrameResultReader();
+    private int opcode = -1;
+    private int frames;
+
+    @Setup
+    public void setup() {
+        stream = Frames.stream(FRAMES);
+    }
+
+    @Benchmark
+    public int decode() {
+        var input = stream.duplicate();
+        bufferIn.clear();
+        opcode = -1;
+        frames = 0;
+        while (input.hasRemaining()) {
+            var length = Math.min(Math.min(fragment, input.remaining()), bufferIn.remaining());
+            bufferIn.put(input.slice(input.position(), length));
+            input.position(input.position() + length);
+            processIn();
+        }
+        if (frames != FRAMES) {
+            throw new AssertionError(frames + " frames decoded");
+        }
+        return frames;
+    }
+
+    private void processIn() {
+        for (;;) {
+            if (opcode == -1) {
+                processFast();
+                if (bufferIn.position() < Integer.BYTES) {
+                    return;
+                }
+                opcode = bufferIn.flip().getInt();
+                bufferIn.compact();
+            }
+            var reader = reader(opcode);
+            if (reader.process(bufferIn) != Reader.ProcessStatus.DONE) {
+                return;
+            }
+            reader.get();
+            reader.reset();
+            frames++;
+            opcode = -1;
+        }
+    }
+
+    private void processFast() {
+        bufferIn.flip();
+        try {
+            while (bufferIn.remaining() >= Integer.BYTES) {
+                var position = bufferIn.position();
+                var reader = reader(bufferIn.getInt(position));
+                bufferIn.position(position + Integer.BYTES);
+                if (reader.processFast(bufferIn) != Reader.ProcessStatus.DONE) {
+                    bufferIn.position(position);
+                    return;
+                }
+                reader.get();
+                reader.reset();
+                frames++;
+            }
+        } finally {
+            bufferIn.compact();
+        }
+    }
+
+    private Reader<?> reader(int opcode) {
+        return opcode == 0 ? frameConjectureReader : frameResultReader;
+    }
+}
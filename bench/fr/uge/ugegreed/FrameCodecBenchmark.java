@@ -0,0 +1,160 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Encodage et décodage d'une trame entière : FrameEncoder contre l'ancien encodage de processOut,
+ * chemin rapide contre readers incrémentaux, et les readers élémentaires IntReader / StringReader.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameCodecBenchmark {
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final ByteBuffer out = ByteBuffer.allocateDirect(64 * 1_024);
+
+    private ByteBuffer conjecture;
+    private ByteBuffer results;
+    private ByteBuffer address;
+    private ByteBuffer string;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(64 * 1_024);
+
+    private final FrameConjectureReader frameConjectureReader = new FrameConjectureReader();
+    private final FrameResultReader frameResultReader = new FrameResultReader();
+    private final FrameAddressReader frameAddressReader = new FrameAddressReader();
+    private final IntReader intReader = new IntReader();
+    private final StringReader stringReader = new StringReader();
+
+    @Setup
+    public void setup() {
+        conjecture = body(Frames.CONJECTURE);
+        results = body(Frames.RESULTS);
+        address = body(new FrameAddress(7777));
+        string = ByteBuffer.allocate(64);
+        string.putInt(Frames.CONJECTURE.urlJar().length()).put(Frames.CONJECTURE.urlJar().getBytes(StandardCharsets.UTF_8));
+        string.flip();
+    }
+
+    /* Corps de la trame, sans l'opcode, en mode lecture */
+    private ByteBuffer body(Object frame) {
+        var buffer = ByteBuffer.allocate(FrameEncoder.size(frame));
+        encoder.encode(frame, buffer);
+        return buffer.flip().position(Integer.BYTES).slice();
+    }
+
+    /* Copie le corps dans le buffer d'entrée, en mode écriture comme bufferIn */
+    private ByteBuffer fill(ByteBuffer body) {
+        return in.clear().put(body.duplicate());
+    }
+
+    @Benchmark
+    public ByteBuffer encodeConjecture() {
+        encoder.encode(Frames.CONJECTURE, out.clear());
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeResults() {
+        encoder.encode(Frames.RESULTS, out.clear());
+        return out;
+    }
+
+    /* Encodage tel qu'il était fait dans processOut avant FrameEncoder */
+    @Benchmark
+    public ByteBuffer encodeConjectureLegacy() {
+        var frameConjecture = Frames.CONJECTURE;
+        out.clear();
+        out.putInt(0);
+        out.putInt(frameConjecture.src());
+        out.putInt(frameConjecture.dst());
+        out.putInt(frameConjecture.id());
+        out.putLong(frameConjecture.start());
+        out.putLong(frameConjecture.end());
+        out.putInt(frameConjecture.urlJar().length());
+        out.put(StandardCharsets.UTF_8.encode(frameConjecture.urlJar()));
+        out.putInt(frameConjecture.fullyQualifiedName().length());
+        out.put(StandardCharsets.UTF_8.encode(frameConjecture.fullyQualifiedName()));
+        out.putInt(frameConjecture.filename().length());
+        out.put(StandardCharsets.UTF_8.encode(frameConjecture.filename()));
+        return out;
+    }
+
+    @Benchmark
+    public FrameConjecture decodeConjectureFast() {
+        fill(conjecture).flip();
+        frameConjectureReader.processFast(in);
+        var frame = frameConjectureReader.get();
+        frameConjectureReader.reset();
+        return frame;
+    }
+
+    @Benchmark
+    public FrameConjecture decodeConjectureIncremental() {
+        fill(conjecture);
+        frameConjectureReader.process(in);
+        var frame = frameConjectureReader.get();
+        frameConjectureReader.reset();
+        return frame;
+    }
+
+    @Benchmark
+    public FrameResult decodeResultsFast() {
+        fill(results).flip();
+        frameResultReader.processFast(in);
+        var frame = frameResultReader.get();
+        frameResultReader.reset();
+        return frame;
+    }
+
+    @Benchmark
+    public FrameResult decodeResultsIncremental() {
+        fill(results);
+        frameResultReader.process(in);
+        var frame = frameResultReader.get();
+        frameResultReader.reset();
+        return frame;
+    }
+
+    @Benchmark
+    public FrameAddress decodeAddress() {
+        fill(address);
+        frameAddressReader.process(in);
+        var frame = frameAddressReader.get();
+        frameAddressReader.reset();
+        return frame;
+    }
+
+    @Benchmark
+    public int decodeInt() {
+        fill(address);
+        intReader.process(in);
+        var value = intReader.get();
+        intReader.reset();
+        return value;
+    }
+
+    @Benchmark
+    public String decodeString() {
+        fill(string);
+        stringReader.process(in);
+        var value = stringReader.get();
+        stringReader.reset();
+        return value;
+    }
+}
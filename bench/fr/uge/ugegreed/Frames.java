@@ -0,0 +1,34 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/* Trames d'exemple partagées par les benchmarks */
+final class Frames {
+    static final FrameConjecture CONJECTURE = new FrameConjecture(7777, 7777, 1, 1, 1, 1_000_000,
+            "/home/ugegreed/jars/Collatz.jar", "fr.uge.collatz.Collatz", "collatz-results.txt");
+
+    static final FrameResult RESULTS;
+
+    static {
+        var results = new ArrayList<Result>();
+        for (var value = 1; value <= 25; value++) {
+            results.add(new Result(value, "{ \"taskId\" : " + value + ", \"steps\" : " + value % 17 + " }"));
+        }
+        RESULTS = new FrameResult(7777, 1, "collatz-results.txt", results);
+    }
+
+    private Frames() {
+        throw new AssertionError();
+    }
+
+    /* Flux de count trames alternant conjecture et résultats, en mode lecture */
+    static ByteBuffer stream(int count) {
+        var encoder = new FrameEncoder();
+        var buffer = ByteBuffer.allocate(count * (FrameEncoder.size(CONJECTURE) + FrameEncoder.size(RESULTS)));
+        for (var i = 0; i < count; i++) {
+            encoder.encode(i % 2 == 0 ? CONJECTURE : RESULTS, buffer);
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,92 @@
+package fr.uge.ugegreed;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Collatz sur une plage de block valeurs, comme un worker de Application.doConjecture : un Checker
+ * appelé valeur par valeur (par l'adaptateur RangeChecker.of), contre un RangeChecker qui garde le
+ * nombre d'étapes de toutes les valeurs rencontrées d'une valeur à l'autre et réutilise son StringBuilder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RangeCheckerBenchmark {
+    private static final long FROM = 1_000_000;
+
+    @Param({ "25", "1000", "100000" })
+    public int block;
+
+    private final RangeChecker perValue = RangeChecker.of(new Collatz());
+    private final RangeChecker range = new CollatzRange();
+
+    @Benchmark
+    public void perValue(Blackhole blackhole) throws InterruptedException {
+        perValue.checkRange(FROM, FROM + block - 1, (value, result) -> blackhole.consume(result));
+    }
+
+    @Benchmark
+    public void range(Blackhole blackhole) throws InterruptedException {
+        range.checkRange(FROM, FROM + block - 1, (value, result) -> blackhole.consume(result));
+    }
+
+    private static final class Collatz implements Checker {
+        @Override
+        public String check(long value) {
+            var steps = 0;
+            for (var x = value; x != 1; x = (x & 1) == 0 ? x >> 1 : 3 * x + 1) {
+                steps++;
+            }
+            return "Collatz " + value + " : " + steps + " étapes";
+        }
+    }
+
+    private static final class CollatzRange implements RangeChecker {
+        /* Nombre d'étapes des valeurs déjà rencontrées sous MEMO_LIMIT, 0 si inconnu */
+        private static final int MEMO_LIMIT = 1 << 22;
+        private final int[] memo = new int[MEMO_LIMIT];
+        private long[] path = new long[1_024];
+        private final StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void checkRange(long from, long to, ResultSink sink) {
+            for (var value = from; value <= to; value++) {
+                /* Descend jusqu'à 1 ou jusqu'à une valeur connue, puis renseigne tout le chemin */
+                var length = 0;
+                var x = value;
+                while (x != 1 && (x >= MEMO_LIMIT || memo[(int) x] == 0)) {
+                    if (length == path.length) {
+                        path = Arrays.copyOf(path, length * 2);
+                    }
+                    path[length++] = x;
+                    x = (x & 1) == 0 ? x >> 1 : 3 * x + 1;
+                }
+                var count = x == 1 ? 0 : memo[(int) x];
+                for (var i = length - 1; i >= 0; i--) {
+                    count++;
+                    if (path[i] < MEMO_LIMIT) {
+                        memo[(int) path[i]] = count;
+                    }
+                }
+                builder.setLength(0);
+                sink.accept(value, builder.append("Collatz ").append(value).append(" : ").append(count)
+                        .append(" étapes").toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Débit de trames reçues par une racine selon son nombre de boucles d'événements. CHILDREN fils
+ * simulés envoient chacun FRAMES trames de capacité en parallèle ; une invocation se termine quand
+ * le compteur FramesIn de la racine (JMX) les a toutes vues. loops=0 est le sélecteur unique.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactorBenchmark {
+    private static final int CHILDREN = 16;
+    private static final int FRAMES = 4_096;
+
+    @Param({ "0", "1", "2", "4" })
+    public int loops;
+
+    private final ArrayList<SocketChannel> clients = new ArrayList<>();
+    private ExecutorService senders;
+    private ByteBuffer payload;
+    private MBeanServer server;
+    private ObjectName metrics;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, JMException {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var application = new Application(port, Files.createTempDirectory("reactor").toString(), loops);
+        var thread = new Thread(() -> {
+            try {
+                application.launch();
+            } catch (IOException | InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        for (var i = 0; i < CHILDREN; i++) {
+            clients.add(SocketChannel.open(new InetSocketAddress("localhost", port)));
+        }
+        var encoder = new FrameEncoder();
+        var frame = new FrameCapacity(1, 0, 0);
+        payload = ByteBuffer.allocateDirect(FRAMES * FrameEncoder.size(frame));
+        for (var i = 0; i < FRAMES; i++) {
+            encoder.encode(frame, payload);
+        }
+        payload.flip();
+        senders = Executors.newFixedThreadPool(CHILDREN);
+        server = ManagementFactory.getPlatformMBeanServer();
+        metrics = new ObjectName("fr.uge.ugegreed:type=Metrics,node=" + port);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        senders.shutdownNow();
+        for (var client : clients) {
+            client.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHILDREN * FRAMES)
+    public long frames() throws JMException, InterruptedException, ExecutionException {
+        var target = framesIn() + (long) CHILDREN * FRAMES;
+        var sends = new ArrayList<Future<?>>();
+        for (var client : clients) {
+            sends.add(senders.submit(() -> {
+                var buffer = payload.duplicate();
+                while (buffer.hasRemaining()) {
+                    client.write(buffer);
+                }
+                return null;
+            }));
+        }
+        for (var send : sends) {
+            send.get();
+        }
+        long received;
+        while ((received = framesIn()) < target) {
+            Thread.onSpinWait();
+        }
+        return received;
+    }
+
+    private long framesIn() throws JMException {
+        return (Long) server.getAttribute(metrics, "FramesIn");
+    }
+}
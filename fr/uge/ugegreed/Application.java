@@ -9,24 +9,89 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static fr.uge.clienttest.Client.checkerFromDisk;
-
 public class Application {
 
-	/* Taille max d'un buffer */
-	private static final int BUFFER_SIZE = 1_024;
+	/* Taille initiale des buffers d'une connexion, ils grandissent ensuite à la demande */
+	private static final int BUFFER_SIZE = 16 * 1_024;
+
+	/* Taille visée pour une trame de résultats */
+	private static final int RESULTS_FRAME_SIZE = 32 * 1_024;
+
+	/* Nombre de threads exécutant les checkers, sauf --workers=N en ligne de commande */
+	private static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors();
+
+	/* Plus petit morceau de plage donné à un worker ou à un fils */
+	private static final int CHUNK_SIZE = 25;
+
+	/* Parts de travail données au pool local en même temps : une en calcul, une d'avance */
+	private static final int LOCAL_SHARES = 2;
+
+	/* Durée de calcul visée pour une feuille du pool local, en nanosecondes */
+	private static final long LEAF_TIME = 10_000_000;
+
+	/* Valeurs au plus dans une feuille, dont les résultats sont gardés en mémoire jusqu'à sa fin */
+	private static final long MAX_LEAF = 100_000;
+
+	/* Période d'envoi de la capacité au parent, en millisecondes */
+	private static final long CAPACITY_PERIOD = 1_000;
+
+	/* Copies spéculatives en cours au plus, sauf --speculation=N en ligne de commande */
+	private static final int DEFAULT_SPECULATION = 2;
+
+	/* Annulations gardées pour les feuilles pas encore calculées */
+	private static final int MAX_CANCELLED = 64;
+
+	/* Commandes traitées au plus par tour de boucle, pour ne pas retarder les connexions */
+	private static final int COMMANDS_PER_ROUND = 64;
+
+	/*
+	 * Conjectures en cours au plus, chacune tenant un thread d'écriture, son journal et son fichier
+	 * ouverts ; les START suivants attendent dans startQueue sans rien ouvrir
+	 */
+	private static final int MAX_ACTIVE_CONJECTURES = 64;
+
+	/*
+	 * Fois où les plages d'un jar absent sont rendues au parent pour qu'il le renvoie ; au-delà, elles
+	 * sont calculées ici en résultats d'erreur plutôt que de circuler sans fin
+	 */
+	private static final int MAX_JAR_ATTEMPTS = 3;
+
+	/* Poids maximal d'une conjecture (option weight= de START) */
+	private static final int MAX_WEIGHT = 1_000;
+
+	/* Nombre de checkers gardés en cache */
+	private static final int CHECKER_CACHE_SIZE = 16;
+
+	/* Nombre de fichiers de résultats gardés ouverts par QUERY */
+	private static final int STORE_CACHE_SIZE = 16;
+
+	/*
+	 * Taille du cache de résultats en Mio, en mémoire sauf --result-cache=N, et sur disque (dans
+	 * <résultats>/.cache) seulement avec --result-cache-disk=N
+	 */
+	private static final int DEFAULT_RESULT_CACHE_MEMORY = 64;
+	private static final int DEFAULT_RESULT_CACHE_DISK = 0;
 
 	/* Logger pour print proprement */
 	private static final Logger logger = Logger.getLogger(Application.class.getName());
@@ -45,34 +110,188 @@ public class Application {
 	/* Selecteur */
 	private final Selector selector;
 
-	/* Enumeration des deux commandes START et DISCONNECT */
-	private enum Command {
-		START, DISCONNECT
-	};
+	/* Commandes remises par la console au thread du sélecteur, un START porte sa ligne découpée */
+	private sealed interface Command permits Start, Disconnect {
+	}
+
+	private record Start(String[] lineCmd) implements Command {
+	}
+
+	private record Disconnect() implements Command {
+	}
 
-	/* Lignes des commandes */
-	private final ArrayBlockingQueue<String[]> lineCommandsQueue = new ArrayBlockingQueue<String[]>(10);
+	/*
+	 * File sans verrou des commandes : la console n'y bloque jamais et un SUBMIT y ajoute tous ses
+	 * jobs d'un coup, avec un seul réveil du sélecteur.
+	 */
+	private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
 
-	/* Commandes */
-	private final ArrayBlockingQueue<Command> commandsQueue = new ArrayBlockingQueue<Command>(10);
+	/* START en attente d'une place parmi les MAX_ACTIVE_CONJECTURES, dans l'ordre d'arrivée */
+	private final ArrayDeque<String[]> startQueue = new ArrayDeque<>();
 
 	/* id conjecture */
 	private int id = 0;
 
-	/* map contenant les fichiers de résultats pour chaque id de conjecture */
-	private final HashMap<Integer, String> idFilename = new HashMap<>();
+	/* map contenant les fichiers de résultats pour chaque id de conjecture, lue aussi par la console (QUERY) */
+	private final ConcurrentHashMap<Integer, String> idFilename = new ConcurrentHashMap<>();
 
-	public Application(int port, String path, InetSocketAddress serverAddress) throws IOException {
+	/* Fichiers indexés ouverts par QUERY, par chemin, propres au thread de la console */
+	private final LinkedHashMap<Path, ResultStore> stores = new LinkedHashMap<>(STORE_CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, ResultStore> eldest) {
+			if (size() <= STORE_CACHE_SIZE) {
+				return false;
+			}
+			try {
+				eldest.getValue().close();
+			} catch (IOException e) {
+				logger.info("Fermeture de " + eldest.getValue().path() + " : " + e.getMessage());
+			}
+			return true;
+		}
+	};
+
+	/*
+	 * Pool exécutant les checkers en dehors du thread du sélecteur. La part locale d'une plage y est
+	 * découpée par RangeTask, les résultats de chaque feuille remontent au thread principal en un lot.
+	 */
+	private final int parallelism;
+	private final ForkJoinPool workers;
+
+	/* Fins de calcul remises au thread du sélecteur */
+	private final ConcurrentLinkedQueue<Runnable> completions = new ConcurrentLinkedQueue<>();
+
+	/* Buffer vide servant de trame large quand il n'y en a pas */
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+	/* Buffers directs partagés par les connexions */
+	private final BufferPool bufferPool = new BufferPool();
+
+	/* Checkers déjà chargés, réutilisés d'une plage à l'autre */
+	private final CheckerCache checkerCache = new CheckerCache(CHECKER_CACHE_SIZE);
+
+	/* Résultats déjà calculés, d'une conjecture à l'autre, pour les jars du JarCache */
+	private final ResultCache resultCache;
+
+	/* Jars reçus ou importés, envoyés aux fils depuis le disque */
+	private final JarCache jarCache;
+
+	/* Écrivain de résultats de chaque conjecture lancée par ce noeud */
+	private final HashMap<Integer, ResultWriter> resultWriters = new HashMap<>();
+
+	/* Nombre de valeurs encore attendues pour chaque conjecture lancée par ce noeud */
+	private final HashMap<Integer, Long> remainingValues = new HashMap<>();
+
+	/* Valeurs déjà écrites, un résultat recalculé après une redistribution est ignoré */
+	private final HashMap<Integer, IntervalSet> receivedValues = new HashMap<>();
+
+	/* Plages reçues dont le jar est encore en cours d'écriture, par empreinte du jar */
+	private final HashMap<String, List<FrameConjecture>> waitingJar = new HashMap<>();
+
+	/* Plages rendues au parent faute de jar, par empreinte du jar */
+	private final HashMap<String, Integer> jarAttempts = new HashMap<>();
+
+	/* Plage complète des conjectures en cours lancées ici, pour mettre en cache ce que calculent les fils */
+	private final HashMap<Integer, FrameConjecture> idConjecture = new HashMap<>();
+
+	/* Le noeud se déconnecte : le travail de ses fils n'est plus redistribué */
+	private boolean leaving = false;
+
+	/* Plages reçues et pas encore distribuées */
+	private final RangePool pool = new RangePool();
+
+	/* Nombre de parts et de valeurs en cours de calcul sur le pool local */
+	private int running = 0;
+	private long runningValues = 0;
+
+	/* Coût moyen d'une valeur mesuré sur les feuilles terminées, 0 tant qu'aucune ne l'est */
+	private double nanosPerValue = 0;
+
+	/* Copies des plages en retard chez les fils */
+	private final Speculator<Context> speculator;
+
+	/* Dernières annulations reçues du parent, lues par les workers avant chaque feuille */
+	private final CopyOnWriteArrayList<FrameCancel> cancelled = new CopyOnWriteArrayList<>();
+
+	/* Débit local mesuré sur la dernière période */
+	private long completedValues = 0;
+	private long lastCompletedValues = 0;
+	private long valuesPerSecond = 0;
+	private long lastTick = System.nanoTime();
+
+	/* Une demande de travail a été envoyée au parent et n'a pas encore reçu de réponse */
+	private boolean waitingWork = false;
+
+	/* Compteurs exposés en JMX et par la commande STATS */
+	private final Metrics metrics;
+
+	/*
+	 * Boucles d'événements des fils. Sans boucle, les fils sont servis par le sélecteur principal ;
+	 * sinon chaque fils accepté est confié à une boucle, et seuls le serveur, le parent et la logique
+	 * de distribution restent sur le thread principal. Les trames passent d'un thread à l'autre par
+	 * la file de chaque boucle et par completions.
+	 */
+	private final EventLoop[] loops;
+	private int nextLoop = 0;
+
+	/* Connexions des fils, tenues par le thread principal */
+	private final ArrayList<Context> children = new ArrayList<>();
+
+	/* Instant où le select a rendu la main pour ce tour de boucle, 0 s'il n'a encore rien traité */
+	private long selectedAt = 0;
+
+	public Application(int port, String path, InetSocketAddress serverAddress, int loops, int workers,
+			int speculation, int resultCacheMemory, int resultCacheDisk) throws IOException {
+		if (loops < 0) {
+			throw new IllegalArgumentException("loops must be positive or zero");
+		}
+		if (workers <= 0) {
+			throw new IllegalArgumentException("workers must be positive");
+		}
+		parallelism = workers;
+		this.workers = new ForkJoinPool(workers);
+		speculator = new Speculator<>(speculation);
 		pathResults = Path.of(path);
+		jarCache = new JarCache(pathResults.resolve(".jars"));
+		resultCache = new ResultCache(pathResults.resolve(".cache"), resultCacheMemory * 1_024L * 1_024,
+				resultCacheDisk * 1_024L * 1_024);
 		serverSocketChannel = ServerSocketChannel.open();
 		serverSocketChannel.bind(new InetSocketAddress(port));
 		selector = Selector.open();
 		this.serverAddress = serverAddress;
 		this.sc = SocketChannel.open();
+		metrics = new Metrics(String.valueOf(port));
+		this.loops = new EventLoop[loops];
+		for (var i = 0; i < loops; i++) {
+			this.loops[i] = new EventLoop("loop-" + i, this::treatContextKey);
+		}
+	}
+
+	public Application(int port, String path, InetSocketAddress serverAddress, int loops, int workers,
+			int speculation) throws IOException {
+		this(port, path, serverAddress, loops, workers, speculation, DEFAULT_RESULT_CACHE_MEMORY,
+				DEFAULT_RESULT_CACHE_DISK);
+	}
+
+	public Application(int port, String path, InetSocketAddress serverAddress, int loops, int workers)
+			throws IOException {
+		this(port, path, serverAddress, loops, workers, DEFAULT_SPECULATION);
+	}
+
+	public Application(int port, String path, InetSocketAddress serverAddress, int loops) throws IOException {
+		this(port, path, serverAddress, loops, DEFAULT_WORKERS);
+	}
+
+	public Application(int port, String path, InetSocketAddress serverAddress) throws IOException {
+		this(port, path, serverAddress, 0, DEFAULT_WORKERS);
+	}
+
+	public Application(int port, String path, int loops) throws IOException {
+		this(port, path, null, loops, DEFAULT_WORKERS);
 	}
 
 	public Application(int port, String path) throws IOException {
-		this(port, path, null);
+		this(port, path, null, 0, DEFAULT_WORKERS);
 	}
 
 	/* Lancement et Traitement des commandes */
@@ -85,10 +304,14 @@ public class Application {
 		console.setDaemon(true);
 		console.start();
 
+		for (var loop : loops) {
+			loop.start();
+		}
+
 		if (serverAddress != null) {
 			sc.configureBlocking(false);
 			var key = sc.register(selector, SelectionKey.OP_CONNECT);
-			uniqueContext = new Context(this, key);
+			uniqueContext = new Context(this, key, "parent " + serverAddress, null);
 			key.attach(uniqueContext);
 			sc.connect(serverAddress);
 		}
@@ -96,8 +319,17 @@ public class Application {
 		while (!Thread.interrupted()) {
 			try {
 				// System.out.println("Starting select");
-				selector.select(this::treatKey);
+				var iteration = System.nanoTime();
+				selectedAt = 0;
+				selector.select(this::treatKey, CAPACITY_PERIOD);
+				var selected = selectedAt != 0 ? selectedAt : System.nanoTime();
+				processCompletions();
+				tick();
+				var commands = System.nanoTime();
 				processCommands();
+				var end = System.nanoTime();
+				metrics.processCommands(end - commands);
+				metrics.selectLoop(end - iteration, end - selected);
 			} catch (UncheckedIOException tunneled) {
 				throw tunneled.getCause();
 			}
@@ -111,14 +343,24 @@ public class Application {
 				var line = scanner.nextLine();
 				switch (line) {
 					case "DISCONNECT":
-						sendCommand(Command.DISCONNECT);
+						sendCommand(new Disconnect());
+						break;
+					case "STATS":
+						/* Les métriques se lisent sans passer par le thread du sélecteur */
+						System.out.print(metrics.report());
 						break;
 					default:
-						var lineCmd = line.split(" ");
-						if (lineCmd.length != 6 || !lineCmd[0].equals("START")) {
-							System.out.println("Invalid command " + line);
-						} else {
-							sendCommand(lineCmd, Command.START);
+						if (line.startsWith("SUBMIT ")) {
+							submit(line.substring("SUBMIT ".length()).trim());
+							break;
+						}
+						if (line.startsWith("QUERY ")) {
+							query(line);
+							break;
+						}
+						var lineCmd = parseStart(line, new HashMap<>());
+						if (lineCmd != null) {
+							sendCommand(new Start(lineCmd));
 						}
 				}
 			}
@@ -129,52 +371,277 @@ public class Application {
 		}
 	}
 
-	private void sendCommand(Command cmd) throws InterruptedException {
-		synchronized (commandsQueue) {
-			commandsQueue.put(cmd);
-			selector.wakeup();
+	/*
+	 * Découpe et vérifie une ligne START, null si elle est invalide. Le jar est importé ici, un
+	 * téléchargement ne bloque pas le sélecteur ; references garde les jars déjà importés.
+	 */
+	private String[] parseStart(String line, Map<String, String> references) throws InterruptedException {
+		var lineCmd = line.split(" ");
+		if (lineCmd.length < 6 || !lineCmd[0].equals("START") || !validRange(lineCmd[3], lineCmd[4])
+				|| options(lineCmd) == null) {
+			System.out.println("Invalid command " + line);
+			return null;
+		}
+		var reference = references.get(lineCmd[1]);
+		if (reference == null) {
+			try {
+				reference = jarCache.reference(lineCmd[1]);
+			} catch (IOException | IllegalArgumentException e) {
+				System.out.println("Invalid jar " + lineCmd[1] + " : " + e.getMessage());
+				return null;
+			}
+			references.put(lineCmd[1], reference);
 		}
+		lineCmd[1] = reference;
+		return lineCmd;
 	}
 
-	private void sendCommand(String[] lineCmd, Command cmd) throws InterruptedException {
-		synchronized (commandsQueue) {
-			lineCommandsQueue.put(lineCmd);
-			commandsQueue.put(cmd);
-			selector.wakeup();
+	/*
+	 * SUBMIT fichier : une conjecture par ligne, avec la syntaxe de START (le mot START est facultatif),
+	 * les lignes vides et celles commençant par # sont ignorées. Les lignes invalides sont signalées
+	 * et les autres sont toutes remises au sélecteur en un seul lot.
+	 */
+	private void submit(String filename) throws InterruptedException {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(Path.of(filename));
+		} catch (IOException e) {
+			System.out.println("Invalid file " + filename + " : " + e.getMessage());
+			return;
+		}
+		var batch = new ArrayList<Command>(lines.size());
+		var references = new HashMap<String, String>();
+		for (var line : lines) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			var lineCmd = parseStart(line.startsWith("START ") ? line : "START " + line, references);
+			if (lineCmd != null) {
+				batch.add(new Start(lineCmd));
+			}
 		}
+		sendCommands(batch);
+		System.out.println(batch.size() + " conjectures soumises depuis " + filename);
 	}
 
-	private void processCommands() throws IOException, NumberFormatException, InterruptedException {
-		Command line;
-		while ((line = commandsQueue.poll()) != null) {
-			synchronized (commandsQueue) {
-				switch (line) {
-					case START:
-						var lineCmd = lineCommandsQueue.poll();
-						id += 1;
-						idFilename.put(id, lineCmd[5]);
-						try (var writer = Files.newBufferedWriter(Path.of(pathResults + "/" + idFilename.get(id)),
-								StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-							writer.write("Résultats conjecture : " + lineCmd[2]);
-							writer.newLine();
-							writer.newLine();
-							writer.write("Range : " + Integer.parseInt(lineCmd[3]) + " -> " + Integer.parseInt(lineCmd[4]));
-							writer.newLine();
-							writer.newLine();
-						} catch (IOException e) {
-							System.err.println(e.getMessage());
-							System.exit(1);
-							return;
-						}
-						broadcast(id, lineCmd[1], lineCmd[2], Integer.parseInt(lineCmd[3]), Integer.parseInt(lineCmd[4]));
-						break;
-					case DISCONNECT:
-						disconnect();
+	/*
+	 * QUERY id valeur ou QUERY id début fin : résultats d'une conjecture terminée au format indexed,
+	 * lus dans son fichier par le thread de la console (voir ResultStore). À la place de l'id, le nom
+	 * du fichier de résultats (relatif au répertoire des résultats) interroge aussi les conjectures
+	 * terminées avant le redémarrage du noeud.
+	 */
+	private void query(String line) {
+		var tokens = line.split(" ");
+		long from;
+		long to;
+		try {
+			if (tokens.length != 3 && tokens.length != 4) {
+				throw new NumberFormatException();
+			}
+			from = Long.parseLong(tokens[2]);
+			to = tokens.length == 4 ? Long.parseLong(tokens[3]) : from;
+		} catch (NumberFormatException e) {
+			System.out.println("Invalid command " + line);
+			return;
+		}
+		var path = queried(tokens[1]);
+		if (path == null) {
+			System.out.println("Conjecture inconnue : " + tokens[1]);
+			return;
+		}
+		try {
+			var store = store(path);
+			var begin = System.nanoTime();
+			if (tokens.length == 3) {
+				var result = store.get(from);
+				var micros = (System.nanoTime() - begin) / 1_000;
+				System.out.println(result == null ? "Aucun résultat pour " + from : result);
+				System.out.println("(" + micros + " µs)");
+				return;
+			}
+			/* Les résultats sont affichés au fil de la lecture, sans être gardés */
+			var count = store.range(from, to, (value, result) -> System.out.println(result));
+			var micros = (System.nanoTime() - begin) / 1_000;
+			System.out.println("(" + count + " résultats en " + micros + " µs)");
+		} catch (IOException e) {
+			System.out.println("Invalid query " + line + " : " + e.getMessage());
+		}
+	}
+
+	/* Fichier d'une conjecture de cette session, ou fichier de résultats nommé ; null s'il n'existe pas */
+	private Path queried(String conjecture) {
+		try {
+			var filename = idFilename.get(Integer.parseInt(conjecture));
+			if (filename != null) {
+				return Path.of(pathResults + "/" + filename);
+			}
+		} catch (NumberFormatException e) {
+			// un nom de fichier
+		}
+		try {
+			var path = pathResults.resolve(conjecture);
+			return Files.isRegularFile(path) ? path : null;
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+	/* Fichier ouvert par un QUERY précédent, rouvert s'il a été réécrit depuis (même nom relancé) */
+	private ResultStore store(Path path) throws IOException {
+		var store = stores.get(path);
+		if (store != null && store.isCurrent()) {
+			return store;
+		}
+		if (store != null) {
+			stores.remove(path);
+			store.close();
+		}
+		store = ResultStore.open(path);
+		stores.put(path, store);
+		return store;
+	}
+
+	/* Plage sur 64 bits, non vide et dont le nombre de valeurs tient dans un long */
+	private static boolean validRange(String start, String end) {
+		try {
+			var first = Long.parseLong(start);
+			var last = Long.parseLong(end);
+			return first <= last && Math.subtractExact(last, first) < Long.MAX_VALUE;
+		} catch (NumberFormatException | ArithmeticException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Options key=value après les six champs de START, null si l'une est invalide :
+	 * format=text|binary|ordered|indexed, codec=deflate|none pour les formats binaires, et weight=N
+	 * (1 à MAX_WEIGHT) le poids de la conjecture face aux autres conjectures en cours.
+	 */
+	private static Map<String, String> options(String[] lineCmd) {
+		var options = new HashMap<String, String>();
+		options.put("format", "text");
+		options.put("codec", "deflate");
+		options.put("weight", "1");
+		for (var i = 6; i < lineCmd.length; i++) {
+			var option = lineCmd[i].split("=", 2);
+			if (option.length != 2 || !validOption(option[0], option[1])) {
+				return null;
+			}
+			options.put(option[0], option[1]);
+		}
+		return options;
+	}
+
+	private static boolean validOption(String key, String value) {
+		switch (key) {
+			case "format":
+				return ResultFormat.NAMES.contains(value);
+			case "codec":
+				return BlockCodec.NAMES.contains(value);
+			case "weight":
+				try {
+					var weight = Integer.parseInt(value);
+					return weight >= 1 && weight <= MAX_WEIGHT;
+				} catch (NumberFormatException e) {
+					return false;
 				}
+			default:
+				return false;
+		}
+	}
+
+	private void sendCommand(Command command) {
+		commands.add(command);
+		selector.wakeup();
+	}
+
+	/* Tout le lot est chaîné d'un coup dans la file, le sélecteur n'est réveillé qu'une fois */
+	private void sendCommands(List<Command> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		commands.addAll(batch);
+		selector.wakeup();
+	}
+
+	/* Au plus COMMANDS_PER_ROUND commandes, le tour suivant est immédiat s'il en reste */
+	private void processCommands() throws IOException {
+		for (var i = 0; i < COMMANDS_PER_ROUND; i++) {
+			var command = commands.poll();
+			if (command == null) {
+				return;
 			}
+			if (command instanceof Start start) {
+				startQueue.add(start.lineCmd());
+				startQueued();
+			} else if (command instanceof Disconnect) {
+				disconnect();
+				return;
+			}
+		}
+		if (!commands.isEmpty()) {
+			selector.wakeup();
 		}
 	}
 
+	/* Lance les START en attente tant qu'il y a de la place, appelé à chaque START et fin de conjecture */
+	private void startQueued() {
+		while (!startQueue.isEmpty() && resultWriters.size() < MAX_ACTIVE_CONJECTURES) {
+			startConjecture(startQueue.poll());
+		}
+	}
+
+	/* Ouvre le journal et l'écrivain de la conjecture, puis met en distribution ce qui reste à calculer */
+	private void startConjecture(String[] lineCmd) {
+		var start = Long.parseLong(lineCmd[3]);
+		var end = Long.parseLong(lineCmd[4]);
+		var options = options(lineCmd);
+		id += 1;
+		idFilename.put(id, lineCmd[5]);
+		IntervalSet done;
+		try {
+			var journal = Journal.open(Path.of(pathResults + "/" + idFilename.get(id) + ".journal"),
+					String.join(" ", lineCmd[1], lineCmd[2], lineCmd[3], lineCmd[4],
+							"format=" + options.get("format"), "codec=" + options.get("codec")));
+			var path = Path.of(pathResults + "/" + idFilename.get(id));
+			/*
+			 * Fichier déjà complet : il n'est pas rouvert, un format qui l'assemble à la fin le réécrirait.
+			 * Le fichier assemblé a la taille journalisée, plus court il a perdu des résultats.
+			 */
+			if (journal.done().count() == end - start + 1 && Files.exists(path)
+					&& Files.size(path) >= journal.offset()) {
+				journal.close();
+				logger.info("Conjecture " + id + " déjà terminée");
+				return;
+			}
+			var writer = new ResultWriter(path,
+					List.of("Résultats conjecture : " + lineCmd[2], "", "Range : " + start + " -> " + end, ""),
+					journal, options.get("format"), options.get("codec"), start, end);
+			/* Relu après l'écrivain, qui remet le journal à zéro si le fichier ne le couvre plus */
+			done = journal.done();
+			resultWriters.put(id, writer);
+			remainingValues.put(id, end - start + 1 - done.count());
+			receivedValues.put(id, done);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (!done.isEmpty()) {
+			logger.info("Reprise de la conjecture " + id + " : " + done.count() + " valeurs déjà calculées");
+		}
+		/* Seuls les trous du journal sont à calculer, le poids ne change pas la reprise */
+		var weight = Integer.parseInt(options.get("weight"));
+		idConjecture.put(id, new FrameConjecture(localPort(), localPort(), id, weight, start, end, lineCmd[1],
+				lineCmd[2], lineCmd[5]));
+		for (var gap : done.gaps(start, end)) {
+			schedule(new FrameConjecture(localPort(), localPort(), id, weight, gap.start(), gap.end(),
+					lineCmd[1], lineCmd[2], lineCmd[5]));
+		}
+		dispatch();
+	}
+
 	/* SERVEUR */
 
 	private void doAccept(SelectionKey key) throws IOException {
@@ -186,131 +653,815 @@ public class Application {
 			return;
 		}
 		sc.configureBlocking(false);
-		var clientKey = sc.register(selector, SelectionKey.OP_READ);
-		clientKey.attach(new Context(this, clientKey));
+		var name = "fils " + sc.getRemoteAddress();
 		logger.info("Connexion avec un nouveau client établie !");
+		if (loops.length == 0) {
+			var clientKey = sc.register(selector, SelectionKey.OP_READ);
+			var context = new Context(this, clientKey, name, null);
+			clientKey.attach(context);
+			children.add(context);
+			return;
+		}
+		/* Le canal est enregistré par le thread de sa boucle, qui annonce ensuite le fils */
+		var loop = loops[nextLoop];
+		nextLoop = (nextLoop + 1) % loops.length;
+		loop.execute(() -> {
+			try {
+				var clientKey = sc.register(loop.selector(), SelectionKey.OP_READ);
+				var context = new Context(this, clientKey, name, loop);
+				clientKey.attach(context);
+				complete(() -> children.add(context));
+			} catch (IOException e) {
+				logger.log(Level.INFO, "Impossible d'enregistrer le fils " + name, e);
+				try {
+					sc.close();
+				} catch (IOException ignored) {
+					// ignore exception
+				}
+			}
+		});
 	}
 
 	/* SERVEUR et CLIENT */
 
-	private void broadcast(int id, String urlJar, String fullyQualifiedName, int startRange, int endRange)
-			throws InterruptedException {
-		int loop = 0;
-		int last = 0;
-		for (var connected : selector.keys()) {
-			if (connected.channel() == serverSocketChannel) {
-				if ((startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) == endRange) {
-					doConjecture(id, (startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))), urlJar,
-							fullyQualifiedName);
-				} else {
-					doConjecture(id, (startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) - 1,
-							urlJar, fullyQualifiedName);
+	/*
+	 * Distribue le travail disponible : d'abord au pool local, puis aux fils qui en ont demandé.
+	 * Quand il en manque, on en vole à un fils occupé et on en redemande au parent.
+	 */
+	private void dispatch() {
+		var children = children();
+		while (running < LOCAL_SHARES && !pool.isEmpty()) {
+			var range = pool.take(localShare(children));
+			running++;
+			runningValues += size(range);
+			doConjecture(range);
+		}
+		var hungry = false;
+		for (var child : children) {
+			if (!child.hungry) {
+				continue;
+			}
+			if (pool.isEmpty()) {
+				hungry = true;
+				continue;
+			}
+			var range = pool.take(Math.max(child.wanted, grantSize(child, children)));
+			child.hungry = false;
+			child.granted += size(range);
+			child.pending += size(range);
+			child.inFlight.add(range);
+			child.queueConjecture(range);
+		}
+		if (hungry) {
+			speculate(children);
+			steal(children);
+		}
+		if (uniqueContext != null && uniqueContext.sc.isConnected() && !waitingWork && pool.isEmpty()
+				&& (running < LOCAL_SHARES || hungry)) {
+			waitingWork = true;
+			uniqueContext.queueRequest(parallelism * CHUNK_SIZE);
+		}
+	}
+
+	/*
+	 * Part guidée pondérée par la capacité annoncée : chaque participant (ce noeud et ses fils) a droit
+	 * à une fraction du travail total proportionnelle à son débit, ou à ses processeurs tant que les
+	 * débits ne sont pas tous connus. Le fils reçoit la moitié de ce qui lui manque pour l'atteindre.
+	 */
+	private long grantSize(Context child, List<Context> children) {
+		return guidedShare(child.processors, child.valuesPerSecond, child.pending, children, CHUNK_SIZE);
+	}
+
+	/* Même part guidée pour le pool local, au moins un morceau par worker */
+	private long localShare(List<Context> children) {
+		return guidedShare(parallelism, valuesPerSecond, runningValues, children, (long) parallelism * CHUNK_SIZE);
+	}
+
+	private long guidedShare(int processors, long throughput, long pending, List<Context> children, long minimum) {
+		var measured = valuesPerSecond > 0;
+		for (var other : children) {
+			measured &= other.valuesPerSecond > 0;
+		}
+		var distributed = runningValues;
+		var weights = (double) weight(measured, parallelism, valuesPerSecond);
+		for (var other : children) {
+			distributed += other.pending;
+			weights += weight(measured, other.processors, other.valuesPerSecond);
+		}
+		return pool.share(distributed, weight(measured, processors, throughput), weights, pending, minimum);
+	}
+
+	private static long weight(boolean measured, int processors, long valuesPerSecond) {
+		return measured ? valuesPerSecond : processors;
+	}
+
+	/* Valeurs reçues par ce noeud et pas encore calculées */
+	private long pending() {
+		return pool.remaining() + runningValues;
+	}
+
+	/* Mesure le débit local et annonce la capacité du sous-arbre au parent */
+	private void tick() {
+		var now = System.nanoTime();
+		if (now - lastTick < CAPACITY_PERIOD * 1_000_000) {
+			return;
+		}
+		valuesPerSecond = (completedValues - lastCompletedValues) * 1_000_000_000 / (now - lastTick);
+		lastCompletedValues = completedValues;
+		var queueConjectureDepth = 0;
+		for (var child : children) {
+			queueConjectureDepth += child.metrics.getQueueConjectureDepth();
+		}
+		if (uniqueContext != null) {
+			queueConjectureDepth += uniqueContext.metrics.getQueueConjectureDepth();
+		}
+		var resultQueueDepth = 0L;
+		for (var writer : resultWriters.values()) {
+			resultQueueDepth += writer.queueDepth();
+		}
+		metrics.tick(now - lastTick, valuesPerSecond, queueConjectureDepth, pool.remaining(), resultQueueDepth);
+		lastTick = now;
+		/* Les segments du cache restés sans ajout partent sur disque, l'écriture se fait hors du sélecteur */
+		resultCache.flush();
+		advertiseCapacity();
+		/* Un fils affamé peut recevoir la copie d'une plage devenue en retard depuis */
+		dispatch();
+	}
+
+	private void advertiseCapacity() {
+		if (uniqueContext == null || !uniqueContext.sc.isConnected()) {
+			return;
+		}
+		var processors = parallelism;
+		var pending = pending();
+		var throughput = valuesPerSecond;
+		for (var child : children()) {
+			processors += child.processors;
+			pending += child.pending;
+			throughput += child.valuesPerSecond;
+		}
+		uniqueContext.queueCapacity(processors, pending, throughput);
+	}
+
+	private static long size(FrameConjecture range) {
+		return range.end() - range.start() + 1;
+	}
+
+	/*
+	 * Tant que le budget le permet, donne à chaque fils affamé une copie de la plage la plus en retard
+	 * chez un autre fils. Seules les valeurs pas encore acquittées de cette plage sont copiées.
+	 */
+	private void speculate(List<Context> children) {
+		var median = speculator.median();
+		if (median == 0) {
+			return;
+		}
+		var now = System.nanoTime();
+		for (var idle : children) {
+			if (!idle.hungry || !speculator.available()) {
+				continue;
+			}
+			Context victim = null;
+			InFlight.Grant late = null;
+			var worst = 0.0;
+			for (var child : children) {
+				if (child == idle) {
+					continue;
+				}
+				for (var grant : child.inFlight.grants()) {
+					if (grant.speculative()) {
+						continue;
+					}
+					var lateness = speculator.lateness(now - grant.grantedAt(), size(grant.range()), median);
+					if (lateness > worst) {
+						worst = lateness;
+						victim = child;
+						late = grant;
+					}
 				}
+			}
+			if (late == null) {
+				return;
+			}
+			late.speculated();
+			var copies = victim.inFlight.pending(late.range());
+			if (copies.isEmpty()) {
+				continue;
+			}
+			idle.hungry = false;
+			for (var copy : copies) {
+				idle.granted += size(copy);
+				idle.pending += size(copy);
+				idle.inFlight.add(copy, true);
+				idle.queueConjecture(copy);
+			}
+			speculator.start(victim, idle, copies);
+			metrics.speculativeCopy();
+			logger.info("Plage " + late.range().start() + " -> " + late.range().end() + " en retard ("
+					+ String.format("%.1f", worst) + "x la médiane) : copie envoyée à un autre fils");
+		}
+	}
 
-			} else if (connected.attachment() != null) {
-				if ((startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) == endRange) {
-					((Context) connected.attachment()).queueConjecture(serverSocketChannel.socket().getLocalPort(),
-							serverSocketChannel.socket().getLocalPort(), id,
-							(startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))), urlJar,
-							fullyQualifiedName, idFilename.get(id));
-					last = (startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size())));
-				} else {
-					((Context) connected.attachment()).queueConjecture(serverSocketChannel.socket().getLocalPort(),
-							serverSocketChannel.socket().getLocalPort(), id,
-							(startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) - 1,
-							urlJar, fullyQualifiedName, idFilename.get(id));
-					last = (startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) - 1;
+	/* Demande au fils ayant reçu le plus de travail d'en rendre la moitié */
+	private void steal(List<Context> children) {
+		Context victim = null;
+		for (var child : children) {
+			if (child.stealing) {
+				return;
+			}
+			if (!child.hungry && (victim == null || child.granted > victim.granted)) {
+				victim = child;
+			}
+		}
+		if (victim != null) {
+			victim.stealing = true;
+			victim.queueRequest(CHUNK_SIZE);
+		}
+	}
+
+	private List<Context> children() {
+		return new ArrayList<>(children);
+	}
+
+	/* Une plage arrive du parent, ou d'un fils qui rend du travail volé */
+	private void receiveConjecture(Context from, FrameConjecture range) {
+		if (from == uniqueContext) {
+			waitingWork = false;
+		} else {
+			/* Rendue sans avoir été volée : le fils n'a pas le jar, il lui sera renvoyé avec sa prochaine plage */
+			if (!from.stealing) {
+				from.forgetJar(range.urlJar());
+			}
+			from.stealing = false;
+			from.pending = Math.max(0, from.pending - size(range));
+			from.inFlight.remove(range);
+		}
+		/*
+		 * Ni calculée ni transmise avant que son jar soit dans le cache : une feuille sans son jar ne
+		 * rendrait que des erreurs. Le parent envoie le jar juste avant la première plage qui l'utilise,
+		 * la plage attend donc la fin de sa réception ; si le jar n'arrive pas, elle est rendue.
+		 */
+		if (!jarCache.stored(range.urlJar())) {
+			var hash = JarCache.hash(range.urlJar());
+			if (jarCache.arriving(range.urlJar())) {
+				waitingJar.computeIfAbsent(hash, key -> new ArrayList<>()).add(range);
+				dispatch();
+				return;
+			}
+			if (giveBack(hash, List.of(range))) {
+				return;
+			}
+		}
+		schedule(range);
+		dispatch();
+	}
+
+	/*
+	 * Rend au parent des plages dont le jar manque, il le renverra avec la prochaine plage qu'il nous
+	 * confie. Faux sans parent ou après MAX_JAR_ATTEMPTS essais : elles sont alors à calculer ici.
+	 */
+	private boolean giveBack(String hash, List<FrameConjecture> ranges) {
+		if (uniqueContext == null || !uniqueContext.sc.isConnected()
+				|| jarAttempts.merge(hash, 1, Integer::sum) > MAX_JAR_ATTEMPTS) {
+			logger.info(ranges.size() + " plages calculées en erreur faute du jar " + hash);
+			return false;
+		}
+		logger.info(ranges.size() + " plages rendues au parent faute du jar " + hash);
+		ranges.forEach(uniqueContext::queueConjecture);
+		return true;
+	}
+
+	/*
+	 * Les valeurs dont le résultat est déjà en cache ne sont pas distribuées : les workers les relisent
+	 * et les remontent comme des résultats calculés, seul le reste de la plage va dans le pool.
+	 */
+	private void schedule(FrameConjecture range) {
+		var hash = resultCache.hash(range.urlJar());
+		if (hash == null) {
+			pool.add(range);
+			return;
+		}
+		var cached = resultCache.cached(hash, range.fullyQualifiedName(), range.start(), range.end());
+		if (cached.isEmpty()) {
+			pool.add(range);
+			return;
+		}
+		var covered = new IntervalSet();
+		cached.forEach(covered::add);
+		for (var gap : covered.gaps(range.start(), range.end())) {
+			pool.add(part(range, gap.start(), gap.end()));
+		}
+		for (var interval : cached) {
+			for (var first = interval.start(); first <= interval.end(); first += MAX_LEAF) {
+				var piece = part(range, first, Math.min(interval.end(), first + MAX_LEAF - 1));
+				workers.execute(() -> serveCached(hash, piece));
+				if (interval.end() - first < MAX_LEAF) {
+					break;
 				}
 			}
-			loop += 1;
 		}
-		if (last < endRange) {
-			doConjecture(id, last + 1, endRange, urlJar, fullyQualifiedName);
+	}
+
+	/* Sur un worker : remonte les résultats en cache de la plage, la remet au pool s'ils sont illisibles */
+	private void serveCached(String hash, FrameConjecture range) {
+		List<Result> results = null;
+		try {
+			results = resultCache.get(hash, range.fullyQualifiedName(), range.start(), range.end());
+		} catch (RuntimeException e) {
+			logger.log(Level.WARNING, "Cache de résultats illisible pour " + range.start() + " -> " + range.end(), e);
 		}
+		if (results == null) {
+			complete(() -> {
+				pool.add(range);
+				dispatch();
+			});
+			return;
+		}
+		metrics.resultCache(results.size(), 0);
+		var cached = results;
+		complete(() -> deliverResults(range.src(), range.id(), range.filename(), cached));
 	}
 
-	private void broadcast(int src, int dst, int id, String urlJar, String fullyQualifiedName, int startRange,
-						   int endRange, String filename) throws InterruptedException {
-		int loop = 0;
-		int last = 0;
-		for (var connected : selector.keys()) {
-			if (connected.attachment() != null) {
-				if ((startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) == endRange) {
-					((Context) connected.attachment()).queueConjecture(src, dst, id,
-							(startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))), urlJar,
-							fullyQualifiedName, filename);
-					last = (startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size())));
-				} else {
-					((Context) connected.attachment()).queueConjecture(src, dst, id,
-							(startRange + (loop * ((endRange - startRange) / selector.keys().size()))),
-							(startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) - 1,
-							urlJar, fullyQualifiedName, filename);
-					last = (startRange + ((loop + 1) * ((endRange - startRange) / selector.keys().size()))) - 1;
+	private static FrameConjecture part(FrameConjecture range, long start, long end) {
+		return new FrameConjecture(range.src(), range.dst(), range.id(), range.weight(), start, end, range.urlJar(),
+				range.fullyQualifiedName(), range.filename());
+	}
+
+	/* Un fils demande du travail, ou le parent vient en voler */
+	private void receiveRequest(Context from, FrameRequest request) {
+		if (from == uniqueContext) {
+			for (var range : pool.stealHalf()) {
+				uniqueContext.queueConjecture(range);
+			}
+			return;
+		}
+		from.hungry = true;
+		from.stealing = false;
+		from.wanted = request.wanted();
+		dispatch();
+	}
+
+	/* Un fils annonce la capacité de son sous-arbre */
+	private void receiveCapacity(Context from, FrameCapacity capacity) {
+		from.processors = capacity.processors();
+		from.pending = capacity.pending();
+		from.valuesPerSecond = capacity.valuesPerSecond();
+	}
+
+	/*
+	 * Soumet la part locale au pool, le thread du sélecteur ne bloque jamais sur un checker. RangeTask
+	 * la découpe en feuilles d'environ LEAF_TIME d'après le coût mesuré d'une valeur, et chaque feuille
+	 * remet ses résultats au thread principal sans attendre les autres.
+	 */
+	private void doConjecture(FrameConjecture range) {
+		var task = new RangeTask(range.start(), range.end(), grain(), (start, end) -> computeLeaf(range.src(),
+				range.id(), range.filename(), start, end, range.urlJar(), range.fullyQualifiedName()));
+		workers.execute(ForkJoinTask.adapt(() -> {
+			try {
+				task.invoke();
+			} finally {
+				complete(this::shareDone);
+			}
+		}));
+	}
+
+	/* Valeurs par feuille : CHUNK_SIZE tant que le coût d'une valeur n'est pas connu */
+	private long grain() {
+		if (nanosPerValue == 0) {
+			return CHUNK_SIZE;
+		}
+		return Math.max(1, Math.min(MAX_LEAF, (long) (LEAF_TIME / nanosPerValue)));
+	}
+
+	/*
+	 * Un RangeChecker reçoit chaque morceau de la feuille absent du cache de résultats, les autres
+	 * checkers sont appelés valeur par valeur ; les morceaux en cache sont relus sans charger le checker.
+	 * Aucune valeur n'est perdue : une valeur dont le checker lève une exception, que le checker n'a
+	 * pas rendue ou qu'il n'a pas pu calculer faute d'être chargé reçoit un résultat d'erreur, qui
+	 * n'entre pas dans le cache. La feuille est toujours rendue par leafDone.
+	 */
+	private void computeLeaf(int src, int id, String filename, long start, long end, String urlJar,
+							 String fullyQualifiedName) {
+		var size = end - start + 1;
+		if (isCancelled(src, id, start, end)) {
+			complete(() -> leafDone(size, 0, 0));
+			return;
+		}
+		var begin = System.nanoTime();
+		var hash = resultCache.hash(urlJar);
+		Optional<CheckerCache.Lease> checker = Optional.empty();
+		var results = new ArrayList<Result>((int) size);
+		var computed = 0L;
+		var hits = 0L;
+		var errors = 0L;
+		/* Temps passé dans le checker et valeurs qu'il a rendues, pour la latence de la feuille */
+		var checkNanos = 0L;
+		var checkedValues = 0L;
+		/* Raison donnée aux valeurs restées sans résultat */
+		var missing = "aucun résultat rendu par le checker";
+		try {
+			var covered = new IntervalSet();
+			if (hash != null) {
+				resultCache.cached(hash, fullyQualifiedName, start, end).forEach(covered::add);
+			}
+			var pieces = new ArrayList<IntervalSet.Interval>(covered.intervals());
+			pieces.addAll(covered.gaps(start, end));
+			pieces.sort(Comparator.comparingLong(IntervalSet.Interval::start));
+			for (var piece : pieces) {
+				if (covered.contains(piece.start())) {
+					var cached = resultCache.get(hash, fullyQualifiedName, piece.start(), piece.end());
+					if (cached != null) {
+						results.addAll(cached);
+						hits += cached.size();
+						continue;
+					}
+				}
+				if (checker.isEmpty()) {
+					if (!jarCache.stored(urlJar)) {
+						missing = "jar " + urlJar + " absent";
+						break;
+					}
+					checker = checkerCache.acquire(jarCache.resolve(urlJar), fullyQualifiedName);
+					if (checker.isEmpty()) {
+						missing = "impossible de charger " + fullyQualifiedName + " depuis " + urlJar;
+						break;
+					}
+				}
+				var before = results.size();
+				var pieceBegin = System.nanoTime();
+				var failed = checkPiece(RangeChecker.of(checker.get().checker()), piece.start(), piece.end(),
+						start, end, results);
+				checkNanos += System.nanoTime() - pieceBegin;
+				errors += failed;
+				var checked = results.size() - before;
+				checkedValues += checked;
+				computed += checked - failed;
+				/* Seuls les morceaux sans erreur sont gardés : une erreur n'est pas un résultat */
+				if (hash != null && failed == 0 && checked == piece.end() - piece.start() + 1) {
+					resultCache.put(hash, fullyQualifiedName, results.subList(before, results.size()));
 				}
 			}
-			loop += 1;
+		} catch (InterruptedException e) {
+			logger.info("Calcul interrompu pour la plage " + start + " -> " + end);
+			complete(() -> leafDone(size, 0, 0));
+			return;
+		} catch (RuntimeException | LinkageError e) {
+			logger.log(Level.WARNING, "Échec du calcul de la plage " + start + " -> " + end, e);
+			missing = "échec du calcul : " + e;
+		} finally {
+			/* Le class loader du checker peut être fermé une fois la feuille finie */
+			checker.ifPresent(CheckerCache.Lease::close);
 		}
-		if (last < endRange) {
-			doConjecture(filename, last + 1, endRange, urlJar, fullyQualifiedName);
+		var absent = fillMissing(results, start, end, missing);
+		if (errors + absent > 0) {
+			logger.info("Conjecture " + src + ":" + id + ", plage " + start + " -> " + end + " : " + (errors + absent)
+					+ " valeurs en erreur" + (absent > 0 ? " (" + missing + ")" : ""));
 		}
+		metrics.checked(src, id, computed);
+		if (checkedValues > 0) {
+			metrics.checkerLatency(checkNanos / checkedValues, checkedValues);
+		}
+		metrics.resultCache(hits, hash == null ? 0 : computed);
+		var elapsed = System.nanoTime() - begin;
+		var values = computed;
+		complete(() -> {
+			deliverResults(src, id, filename, results);
+			leafDone(size, values, elapsed);
+		});
 	}
 
-	private void doConjecture(int id, int start, int end, String urlJar, String fullyQualifiedName)
+	/*
+	 * Calcule from -> to, un morceau de la feuille start -> end, à la suite de results. Quand le checker
+	 * lève une exception, la valeur qui suit son dernier résultat reçoit un résultat d'erreur et le
+	 * calcul reprend après elle. Renvoie le nombre de valeurs en erreur.
+	 */
+	private long checkPiece(RangeChecker checker, long from, long to, long start, long end, ArrayList<Result> results)
 			throws InterruptedException {
-		Optional<Checker> checker = checkerFromDisk(Path.of(urlJar), fullyQualifiedName);
-		try (var writer = Files.newBufferedWriter(Path.of(pathResults + "/" + idFilename.get(id)),
-				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-			for (var value = start; value <= end; value++) {
-				writer.write(checker.get().check(value));
-				writer.newLine();
+		ResultSink sink = (value, result) -> {
+			/* Une valeur hors de la plage ou déjà vue fausserait le décompte de la racine */
+			if (value < start || value > end
+					|| (!results.isEmpty() && value <= results.get(results.size() - 1).value())) {
+				logger.info("Résultat ignoré pour " + value + " hors de la plage " + start + " -> " + end);
+				return;
 			}
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-			System.exit(1);
+			results.add(new Result(value, result));
+		};
+		var errors = 0L;
+		for (var next = from;;) {
+			try {
+				checker.checkRange(next, to, sink);
+				return errors;
+			} catch (RuntimeException | LinkageError e) {
+				var received = results.isEmpty() ? Long.MIN_VALUE : results.get(results.size() - 1).value();
+				if (received >= next && received == to) {
+					return errors;
+				}
+				var failed = received >= next ? received + 1 : next;
+				results.add(Result.failure(failed, e.toString()));
+				errors++;
+				if (failed == to) {
+					return errors;
+				}
+				next = failed + 1;
+			}
+		}
+	}
+
+	/* Ajoute un résultat d'erreur pour chaque valeur de start -> end absente de results, renvoie leur nombre */
+	private static long fillMissing(ArrayList<Result> results, long start, long end, String reason) {
+		if (results.size() == end - start + 1) {
+			return 0;
+		}
+		var complete = new ArrayList<Result>((int) (end - start + 1));
+		var index = 0;
+		for (var i = 0L; i <= end - start; i++) {
+			var value = start + i;
+			if (index < results.size() && results.get(index).value() == value) {
+				complete.add(results.get(index++));
+			} else {
+				complete.add(Result.failure(value, reason));
+			}
+		}
+		var absent = complete.size() - results.size();
+		results.clear();
+		results.addAll(complete);
+		return absent;
+	}
+
+	/* Résultats remontant d'un fils : ils acquittent les valeurs qui lui avaient été confiées */
+	private void receiveResults(Context from, FrameResult frameResult) {
+		var src = frameResult.src();
+		var id = frameResult.id();
+		var results = frameResult.results();
+		var now = System.nanoTime();
+		for (var grant : from.inFlight.acknowledge(src, id, results)) {
+			if (!grant.speculative()) {
+				speculator.sample(now - grant.grantedAt(), size(grant.range()));
+			}
+		}
+		/* Une valeur copiée est acquittée chez les deux fils, le premier résultat gagne */
+		for (var speculation : speculator.involving(from)) {
+			speculation.other(from).inFlight.acknowledge(src, id, results);
+		}
+		for (var speculation : speculator.acknowledge(from, src, id, results)) {
+			var loser = speculation.other(from);
+			for (var range : speculation.ranges()) {
+				loser.inFlight.remove(range);
+				loser.queueCancel(new FrameCancel(src, id, range.start(), range.end()));
+			}
+			if (from == speculation.copy()) {
+				metrics.speculativeWin();
+			}
+		}
+		deliverResults(src, id, frameResult.filename(), results);
+	}
+
+	/*
+	 * Le parent annule des valeurs, calculées ailleurs : elles sortent du pool, l'annulation suit les
+	 * fils qui en ont encore, et les feuilles locales qui ne contiennent qu'elles ne sont pas calculées.
+	 */
+	private void receiveCancel(Context from, FrameCancel cancel) {
+		if (from != uniqueContext) {
 			return;
 		}
+		metrics.cancelled(pool.cancel(cancel.src(), cancel.id(), cancel.start(), cancel.end()));
+		for (var child : children) {
+			if (child.inFlight.count(cancel.src(), cancel.id(), cancel.start(), cancel.end()) > 0) {
+				child.inFlight.remove(cancel.src(), cancel.id(), cancel.start(), cancel.end());
+				child.queueCancel(cancel);
+			}
+		}
+		cancelled.add(cancel);
+		if (cancelled.size() > MAX_CANCELLED) {
+			cancelled.remove(0);
+		}
 	}
 
-	private void doConjecture(String filename, int start, int end, String urlJar, String fullyQualifiedName)
-			throws InterruptedException {
-		Optional<Checker> checker = checkerFromDisk(Path.of(urlJar), fullyQualifiedName);
-		try (var writer = Files.newBufferedWriter(Path.of(pathResults + "/" + filename), StandardOpenOption.CREATE,
-				StandardOpenOption.APPEND)) {
-			for (var value = start; value <= end; value++) {
-				writer.write(checker.get().check(value));
-				writer.newLine();
+	private boolean isCancelled(int src, int id, long start, long end) {
+		for (var cancel : cancelled) {
+			if (cancel.src() == src && cancel.id() == id && cancel.start() <= start && end <= cancel.end()) {
+				return true;
 			}
-		} catch (IOException e) {
-			System.err.println(e.getMessage());
-			System.exit(1);
+		}
+		return false;
+	}
+
+	/*
+	 * Morceau du jar d'une conjecture, envoyé par le parent avant la conjecture elle-même. Il est écrit
+	 * hors du sélecteur, qui n'est prévenu qu'à la fin du jar.
+	 */
+	private void receiveJar(FrameJar frameJar) {
+		jarCache.receive(frameJar, (hash, e) -> complete(() -> jarReceived(hash, e)));
+	}
+
+	/*
+	 * Le jar est dans le cache : les plages qui l'attendaient sont distribuées. Si sa réception a
+	 * échoué, elles sont rendues au parent, qui a le jar, plutôt que calculées en erreurs.
+	 */
+	private void jarReceived(String hash, IOException e) {
+		if (e == null) {
+			logger.info("Jar reçu : " + hash);
+			jarAttempts.remove(hash);
+		} else {
+			logger.log(Level.INFO, "Impossible d'écrire le jar " + hash, e);
+		}
+		var waiting = waitingJar.remove(hash);
+		if (waiting == null || e != null && giveBack(hash, waiting)) {
 			return;
 		}
+		waiting.forEach(this::schedule);
+		dispatch();
+	}
+
+	/* La connexion d'un fils est tombée : ses plages non acquittées retournent dans le pool */
+	private void lost(Context context) {
+		children.remove(context);
+		/* Ce que l'autre copie d'une spéculation calcule encore n'est pas redistribué */
+		var partners = speculator.forget(context);
+		if (leaving || context.inFlight.isEmpty()) {
+			return;
+		}
+		var values = 0L;
+		for (var range : context.inFlight.drain()) {
+			var parts = List.of(range);
+			for (var speculation : partners) {
+				var partner = speculation.other(context);
+				parts = parts.stream().flatMap(part -> partner.inFlight.missing(part).stream()).toList();
+			}
+			for (var part : parts) {
+				pool.add(part);
+				values += size(part);
+			}
+		}
+		logger.info("Connexion perdue avec un fils : " + values + " valeurs redistribuées");
+		dispatch();
+	}
+
+	/* Les résultats sont écrits par la racine, les autres noeuds les remontent à leur parent */
+	private void deliverResults(int src, int id, String filename, List<Result> results) {
+		if (src == localPort()) {
+			writeResults(id, results);
+			return;
+		}
+		if (uniqueContext == null) {
+			logger.info("Aucun parent pour remonter les résultats de la conjecture " + id);
+			return;
+		}
+		uniqueContext.queueResults(src, id, filename, results);
+	}
+
+	private void writeResults(int id, List<Result> results) {
+		var writer = resultWriters.get(id);
+		if (writer == null) {
+			logger.info("Résultats reçus pour une conjecture inconnue ou terminée : " + id);
+			return;
+		}
+		var received = receivedValues.get(id);
+		var accepted = new ArrayList<Result>(results.size());
+		for (var result : results) {
+			if (!received.contains(result.value())) {
+				received.add(result.value(), result.value());
+				accepted.add(result);
+			}
+		}
+		writer.submit(accepted);
+		cacheReceived(idConjecture.get(id), accepted);
+		var remaining = remainingValues.merge(id, (long) -accepted.size(), Long::sum);
+		if (remaining <= 0) {
+			resultWriters.remove(id);
+			remainingValues.remove(id);
+			receivedValues.remove(id);
+			idConjecture.remove(id);
+			metrics.finished(localPort(), id);
+			writer.close();
+			logger.info("Conjecture " + id + " terminée");
+			startQueued();
+		}
+	}
+
+	/*
+	 * Met en cache les résultats calculés par les fils pour une conjecture lancée ici ; les résultats
+	 * calculés ici sont déjà en cache et ne sont pas réécrits. Les résultats d'erreur, marqués comme tels
+	 * dans la trame, sont laissés de côté : une erreur passagère d'un fils serait sinon relue à chaque
+	 * conjecture.
+	 */
+	private void cacheReceived(FrameConjecture conjecture, List<Result> accepted) {
+		if (conjecture == null || accepted.isEmpty()) {
+			return;
+		}
+		var hash = resultCache.hash(conjecture.urlJar());
+		if (hash == null) {
+			return;
+		}
+		workers.execute(() -> {
+			var sorted = new ArrayList<Result>(accepted.size());
+			for (var result : accepted) {
+				if (!result.error()) {
+					sorted.add(result);
+				}
+			}
+			sorted.sort(Comparator.comparingLong(Result::value));
+			resultCache.put(hash, conjecture.fullyQualifiedName(), sorted);
+		});
+	}
+
+	private int localPort() {
+		return serverSocketChannel.socket().getLocalPort();
+	}
+
+	/* Moyenne glissante du coût d'une valeur, qui règle la taille des feuilles suivantes */
+	private void leafDone(long values, long computed, long nanos) {
+		runningValues -= values;
+		completedValues += computed;
+		if (computed > 0) {
+			var cost = (double) nanos / computed;
+			nanosPerValue = nanosPerValue == 0 ? cost : 0.8 * nanosPerValue + 0.2 * cost;
+		}
+	}
+
+	private void shareDone() {
+		running--;
+		dispatch();
+	}
+
+	/* Remet une fin de calcul au thread du sélecteur et le réveille */
+	private void complete(Runnable completion) {
+		completions.add(completion);
+		selector.wakeup();
+	}
+
+	private void processCompletions() {
+		Runnable completion;
+		while ((completion = completions.poll()) != null) {
+			completion.run();
+		}
 	}
 
 	static private class Context {
 		private final Application application;
+		/* Boucle propriétaire de la connexion, null pour le sélecteur principal */
+		private final EventLoop loop;
+		/* Trames reçues à remettre au thread principal à la fin de la lecture en cours */
+		private final ArrayList<Runnable> toMain = new ArrayList<>();
 		private final SelectionKey key;
 		private final SocketChannel sc;
-		private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-		private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
+		private ByteBuffer bufferIn;
+		private ByteBuffer bufferOut;
+		private final FrameEncoder encoder = new FrameEncoder();
+
+		/* Trame trop grande pour bufferOut, en attente d'envoi (mode lecture) */
+		private ByteBuffer largeFrame = EMPTY;
+		private final ByteBuffer[] gather = new ByteBuffer[2];
 
 		private final ArrayDeque<FrameConjecture> queueConjecture = new ArrayDeque<>();
 		private final ArrayDeque<FrameAddress> queueDisconnect = new ArrayDeque<>();
+		private final ArrayDeque<FrameResult> queueResults = new ArrayDeque<>();
 
 		private final FrameConjectureReader frameConjectureReader = new FrameConjectureReader();
 		private final FrameAddressReader frameAddressReader = new FrameAddressReader();
+		private final FrameResultReader frameResultReader = new FrameResultReader();
+
+		private final ArrayDeque<FrameRequest> queueRequest = new ArrayDeque<>();
+		private final FrameRequestReader frameRequestReader = new FrameRequestReader();
+
+		/* Jars que le pair possède déjà : envoyés sur cette connexion ou reçus d'elle */
+		private final HashSet<String> jarsSent = new HashSet<>();
+		private final ArrayDeque<FrameJar> queueJar = new ArrayDeque<>();
+		private final FrameJarReader frameJarReader = new FrameJarReader();
+
+		private final ArrayDeque<FrameCancel> queueCancel = new ArrayDeque<>();
+		private final FrameCancelReader frameCancelReader = new FrameCancelReader();
+
+		/* Opcode de la trame en cours de lecture, -1 si aucune */
+		private int opcode = -1;
+
+		/* État de la distribution du travail vers ce fils, tenu par le thread principal */
+		private boolean hungry = false;
+		private int wanted = 0;
+		private boolean stealing = false;
+		private long granted = 0;
+		private final InFlight inFlight = new InFlight();
+
+		private final ConnectionMetrics metrics;
+
+		/* Dernière capacité annoncée par ce fils */
+		private int processors = 1;
+		private long pending = 0;
+		private long valuesPerSecond = 0;
+		private final ArrayDeque<FrameCapacity> queueCapacity = new ArrayDeque<>();
+		private final FrameCapacityReader frameCapacityReader = new FrameCapacityReader();
 
 		private boolean closed = false;
+		private boolean released = false;
 
-		private Context(Application application, SelectionKey key) {
+		private Context(Application application, SelectionKey key, String name, EventLoop loop) {
 			this.application = application;
+			this.loop = loop;
 			this.key = key;
 			this.sc = (SocketChannel) key.channel();
+			this.metrics = application.metrics.connection(name);
+			this.bufferIn = application.bufferPool.acquire(BUFFER_SIZE);
+			this.bufferOut = application.bufferPool.acquire(BUFFER_SIZE);
 		}
 
 		public void doConnect() throws IOException {
@@ -318,18 +1469,131 @@ public class Application {
 				return; // the selector gave a bad hint
 			key.interestOps(SelectionKey.OP_READ);
 			logger.info("Connexion au serveur établie !");
+			application.advertiseCapacity();
+			application.dispatch();
 		}
 
-		public void queueConjecture(int src, int dst, int id, int start, int end, String urlJar,
-									String fullyQualifiedName, String filename) {
-			queueConjecture.add(new FrameConjecture(src, dst, id, start, end, urlJar, fullyQualifiedName, filename));
-			processOut();
+		/* Exécute l'action sur le thread qui possède la connexion */
+		private void inLoop(Runnable action) {
+			if (loop == null || loop.inLoop()) {
+				action.run();
+				return;
+			}
+			loop.execute(action);
+		}
+
+		/* Traitement applicatif d'une trame, remis au thread principal si la connexion a sa boucle */
+		private void onMain(Runnable action) {
+			if (loop == null) {
+				action.run();
+				return;
+			}
+			toMain.add(action);
+		}
+
+		/* Un seul passage au thread principal pour toutes les trames d'une lecture */
+		private void flushToMain() {
+			if (toMain.isEmpty()) {
+				return;
+			}
+			var actions = List.copyOf(toMain);
+			toMain.clear();
+			application.complete(() -> actions.forEach(Runnable::run));
 		}
 
-		public void queueDisconnect(int port) throws IOException {
-			queueDisconnect.add(new FrameAddress(port));
+		public void queueConjecture(FrameConjecture frameConjecture) {
+			inLoop(() -> {
+				offerJar(frameConjecture.urlJar());
+				queueConjecture.add(frameConjecture);
+				processOut();
+			});
+		}
+
+		/* Le fils n'a pas pu garder le jar : il sera renvoyé avant la prochaine conjecture qui l'utilise */
+		public void forgetJar(String urlJar) {
+			inLoop(() -> jarsSent.remove(urlJar));
+		}
+
+		/* Met le jar en file avant la première conjecture qui l'utilise sur cette connexion */
+		private void offerJar(String urlJar) {
+			if (!JarCache.isReference(urlJar) || !jarsSent.add(urlJar)) {
+				return;
+			}
+			try {
+				queueJar.addAll(application.jarCache.chunks(JarCache.hash(urlJar)));
+			} catch (IOException e) {
+				jarsSent.remove(urlJar);
+				logger.log(Level.INFO, "Impossible de lire le jar " + urlJar, e);
+			}
+		}
+
+		public void queueCapacity(int processors, long pending, long valuesPerSecond) {
+			inLoop(() -> {
+				queueCapacity.add(new FrameCapacity(processors, pending, valuesPerSecond));
+				processOut();
+			});
+		}
+
+		public void queueCancel(FrameCancel frameCancel) {
+			inLoop(() -> {
+				queueCancel.add(frameCancel);
+				processOut();
+			});
+		}
+
+		public void queueRequest(int wanted) {
+			inLoop(() -> {
+				queueRequest.add(new FrameRequest(wanted));
+				processOut();
+			});
+		}
+
+		/*
+		 * Découpe les résultats en lots d'au plus RESULTS_FRAME_SIZE octets. Un résultat plus grand qu'une
+		 * chaîne de trame est remplacé par un résultat d'erreur : la valeur reste acquittée chez la racine.
+		 */
+		public void queueResults(int src, int id, String filename, List<Result> results) {
+			inLoop(() -> splitResults(src, id, filename, results));
+		}
+
+		private void splitResults(int src, int id, String filename, List<Result> results) {
+			var headerSize = Integer.BYTES * 5 + FrameEncoder.utf8Length(filename);
+			var batch = new ArrayList<Result>();
+			var size = headerSize;
+			for (var result : results) {
+				var length = FrameEncoder.utf8Length(result.result());
+				if (length > StringReader.MAX_SIZE) {
+					logger.info("Résultat trop grand pour être remonté : " + result.value());
+					result = Result.failure(result.value(), "résultat de " + length
+							+ " octets, plus grand que la taille maximale d'une chaîne (" + StringReader.MAX_SIZE + ")");
+				}
+				var recordSize = FrameEncoder.size(result);
+				if (size + recordSize > RESULTS_FRAME_SIZE && !batch.isEmpty()) {
+					queueResults.add(new FrameResult(src, id, filename, batch));
+					batch = new ArrayList<>();
+					size = headerSize;
+				}
+				batch.add(result);
+				size += recordSize;
+			}
+			if (!batch.isEmpty()) {
+				queueResults.add(new FrameResult(src, id, filename, batch));
+			}
 			processOut();
-			doWrite();
+		}
+
+		/* Envoie l'adresse du parent au fils puis ferme la connexion */
+		public void disconnect(int port) {
+			inLoop(() -> {
+				queueDisconnect.add(new FrameAddress(port));
+				processOut();
+				try {
+					doWrite();
+				} catch (IOException e) {
+					// fermé juste après
+				}
+				silentlyClose();
+			});
 		}
 
 		private void updateInterestOps() {
@@ -337,116 +1601,204 @@ public class Application {
 			if (!closed && bufferIn.hasRemaining()) {
 				interestOps |= SelectionKey.OP_READ;
 			}
-			if (bufferOut.position() > 0) {
+			if (bufferOut.position() > 0 || largeFrame.hasRemaining()) {
 				interestOps |= SelectionKey.OP_WRITE;
 			}
 			key.interestOps(interestOps);
 		}
 
 		private void processIn() throws IOException {
-			if (bufferIn.position() >= Integer.BYTES) {
-				int id = bufferIn.flip().getInt();
-				bufferIn.compact();
-				if (id == 0) {
-					for (;;) {
-						Reader.ProcessStatus status = frameConjectureReader.process(bufferIn);
-						switch (status) {
-							case DONE:
-								FrameConjecture frameConjecture = frameConjectureReader.get();
-								if (frameConjecture.end() - frameConjecture.start() > 25) {
-									try {
-										application.broadcast(frameConjecture.src(), frameConjecture.dst(), frameConjecture.id(), frameConjecture.urlJar(),
-												frameConjecture.fullyQualifiedName(), frameConjecture.start() + 25,
-												frameConjecture.end(), frameConjecture.filename());
-									} catch (InterruptedException e) {
-										logger.info("Une erreur est survenue");
-										silentlyClose();
-									}
-									try {
-										application.doConjecture(frameConjecture.filename(), frameConjecture.start(),
-												frameConjecture.start() + 24, frameConjecture.urlJar(),
-												frameConjecture.fullyQualifiedName());
-									} catch (InterruptedException e) {
-										logger.info("Une erreur est survenue");
-										silentlyClose();
-									}
-								} else {
-									try {
-										application.doConjecture(frameConjecture.filename(), frameConjecture.start(),
-												frameConjecture.end(), frameConjecture.urlJar(),
-												frameConjecture.fullyQualifiedName());
-									} catch (InterruptedException e) {
-										logger.info("Une erreur est survenue");
-										silentlyClose();
-									}
-								}
-								frameConjectureReader.reset();
-								processOut();
-								break;
-							case REFILL:
-								return;
-							case ERROR:
-								silentlyClose();
-								return;
-						}
+			for (;;) {
+				if (opcode == -1) {
+					processFast();
+					if (released || bufferIn.position() < Integer.BYTES) {
+						return;
 					}
-				} else if (id == 1) {
-					// RESULTATS A TRAITER
-				} else if (id == 2) {
-					for (;;) {
-						Reader.ProcessStatus status = frameAddressReader.process(bufferIn);
-						switch (status) {
-							case DONE:
-								FrameAddress frameAddress = frameAddressReader.get();
-								application.connect(frameAddress.port());
-								frameAddressReader.reset();
-								silentlyClose();
-								break;
-							case REFILL:
-								return;
-							case ERROR:
-								silentlyClose();
-								return;
+					opcode = bufferIn.flip().getInt();
+					bufferIn.compact();
+				}
+				var reader = reader(opcode);
+				if (reader == null) {
+					silentlyClose();
+					return;
+				}
+				switch (reader.process(bufferIn)) {
+					case DONE:
+						var frameOpcode = opcode;
+						opcode = -1;
+						onFrame(frameOpcode);
+						if (released) {
+							return;
 						}
+						break;
+					case REFILL:
+						return;
+					case ERROR:
+						silentlyClose();
+						return;
+				}
+			}
+		}
+
+		/*
+		 * Décode toutes les trames complètes de bufferIn en mode lecture, avec un seul compact à la fin.
+		 * S'arrête sur une trame partielle, qui sera lue par les readers incrémentaux.
+		 */
+		private void processFast() throws IOException {
+			bufferIn.flip();
+			try {
+				while (bufferIn.remaining() >= Integer.BYTES) {
+					var position = bufferIn.position();
+					var frameOpcode = bufferIn.getInt(position);
+					var reader = reader(frameOpcode);
+					if (reader == null) {
+						silentlyClose();
+						return;
+					}
+					bufferIn.position(position + Integer.BYTES);
+					var status = reader.processFast(bufferIn);
+					if (status == Reader.ProcessStatus.REFILL) {
+						bufferIn.position(position);
+						return;
+					}
+					if (status == Reader.ProcessStatus.ERROR) {
+						silentlyClose();
+						return;
 					}
+					onFrame(frameOpcode);
+					if (released) {
+						return;
+					}
+				}
+			} finally {
+				if (!released) {
+					bufferIn.compact();
 				}
 			}
 		}
 
+		private Reader<?> reader(int opcode) {
+			switch (opcode) {
+				case 0:
+					return frameConjectureReader;
+				case 1:
+					return frameResultReader;
+				case 2:
+					return frameAddressReader;
+				case 3:
+					return frameRequestReader;
+				case 4:
+					return frameCapacityReader;
+				case 5:
+					return frameJarReader;
+				case 6:
+					return frameCancelReader;
+				default:
+					return null;
+			}
+		}
+
+		/* Traite la trame que le reader de cet opcode vient de terminer */
+		private void onFrame(int opcode) throws IOException {
+			metrics.frameIn();
+			switch (opcode) {
+				case 0:
+					var frameConjecture = frameConjectureReader.get();
+					frameConjectureReader.reset();
+					onMain(() -> application.receiveConjecture(this, frameConjecture));
+					break;
+				case 1:
+					var frameResult = frameResultReader.get();
+					frameResultReader.reset();
+					onMain(() -> application.receiveResults(this, frameResult));
+					break;
+				case 2:
+					/* Seul le parent envoie son adresse, et il est sur le sélecteur principal */
+					FrameAddress frameAddress = frameAddressReader.get();
+					frameAddressReader.reset();
+					application.connect(frameAddress.port());
+					silentlyClose();
+					break;
+				case 3:
+					var frameRequest = frameRequestReader.get();
+					frameRequestReader.reset();
+					onMain(() -> application.receiveRequest(this, frameRequest));
+					break;
+				case 4:
+					var frameCapacity = frameCapacityReader.get();
+					frameCapacityReader.reset();
+					onMain(() -> application.receiveCapacity(this, frameCapacity));
+					break;
+				case 5:
+					var frameJar = frameJarReader.get();
+					frameJarReader.reset();
+					jarsSent.add(JarCache.PREFIX + frameJar.hash());
+					onMain(() -> application.receiveJar(frameJar));
+					break;
+				case 6:
+					var frameCancel = frameCancelReader.get();
+					frameCancelReader.reset();
+					onMain(() -> application.receiveCancel(this, frameCancel));
+					break;
+			}
+		}
+
 		private void processOut() {
-			if (queueDisconnect.size() > 0) {
-				while (queueDisconnect.size() > 0) {
-					if (bufferOut.remaining() >= Integer.BYTES + Integer.BYTES) {
-						bufferOut.putInt(2);
-						FrameAddress address = queueDisconnect.poll();
-						bufferOut.putInt(address.port());
+			if (released) {
+				return;
+			}
+			if (!largeFrame.hasRemaining()) {
+				if (queueDisconnect.size() > 0) {
+					while (queueDisconnect.size() > 0 && tryEncode(queueDisconnect.peek())) {
+						queueDisconnect.poll();
 					}
-				}
-			} else {
-				while (queueConjecture.size() > 0) {
-					if (bufferOut.remaining() >= Integer.BYTES * 9 + queueConjecture.peek().urlJar().length()
-							+ queueConjecture.peek().fullyQualifiedName().length()
-							+ queueConjecture.peek().filename().length()) {
-						var frameConjecture = queueConjecture.poll();
-						bufferOut.putInt(0);
-						bufferOut.putInt(frameConjecture.src());
-						bufferOut.putInt(frameConjecture.dst());
-						bufferOut.putInt(frameConjecture.id());
-						bufferOut.putInt(frameConjecture.start());
-						bufferOut.putInt(frameConjecture.end());
-						bufferOut.putInt(frameConjecture.urlJar().length());
-						bufferOut.put(StandardCharsets.UTF_8.encode(frameConjecture.urlJar()));
-						bufferOut.putInt(frameConjecture.fullyQualifiedName().length());
-						bufferOut.put(StandardCharsets.UTF_8.encode(frameConjecture.fullyQualifiedName()));
-						bufferOut.putInt(frameConjecture.filename().length());
-						bufferOut.put(StandardCharsets.UTF_8.encode(frameConjecture.filename()));
-						continue;
+				} else {
+					while (queueCapacity.size() > 0 && tryEncode(queueCapacity.peek())) {
+						queueCapacity.poll();
+					}
+					while (queueCancel.size() > 0 && tryEncode(queueCancel.peek())) {
+						queueCancel.poll();
+					}
+					while (queueRequest.size() > 0 && tryEncode(queueRequest.peek())) {
+						queueRequest.poll();
+					}
+					while (queueJar.size() > 0 && tryEncode(queueJar.peek())) {
+						queueJar.poll();
+					}
+					/* Une conjecture ne part qu'une fois son jar entièrement envoyé */
+					while (queueJar.isEmpty() && queueConjecture.size() > 0 && tryEncode(queueConjecture.peek())) {
+						queueConjecture.poll();
+					}
+					while (queueResults.size() > 0 && tryEncode(queueResults.peek())) {
+						queueResults.poll();
 					}
 				}
 			}
+			metrics.queueConjectureDepth(queueConjecture.size());
 			updateInterestOps();
 		}
 
+		/*
+		 * Encode la trame dans bufferOut si elle y tient. Une trame plus grande que bufferOut est
+		 * encodée à part et envoyée derrière lui par une écriture groupée ; plus rien n'est encodé
+		 * tant qu'elle n'est pas partie.
+		 */
+		private boolean tryEncode(Object frame) {
+			if (encoder.encode(frame, bufferOut)) {
+				metrics.frameOut();
+				return true;
+			}
+			var size = FrameEncoder.size(frame);
+			if (size <= bufferOut.capacity() || largeFrame.hasRemaining()) {
+				return false;
+			}
+			largeFrame = application.bufferPool.acquire(size);
+			encoder.encode(frame, largeFrame);
+			largeFrame.flip();
+			metrics.frameOut();
+			return true;
+		}
+
 		public void doRead() throws IOException {
 			int bytesRead = sc.read(bufferIn);
 			if (bytesRead == -1) {
@@ -454,13 +1806,32 @@ public class Application {
 				silentlyClose();
 				return;
 			}
+			metrics.read(bytesRead);
+			// un buffer rempli d'un coup est trop petit pour le débit de la connexion
+			var full = !bufferIn.hasRemaining();
 			processIn();
+			flushToMain();
+			if (full && !released && bufferIn.capacity() < BufferPool.MAX_SIZE) {
+				bufferIn = application.bufferPool.grow(bufferIn, bufferIn.capacity() * 2);
+				updateInterestOps();
+			}
 		}
 
 		public void doWrite() throws IOException {
-			sc.write(bufferOut.flip());
+			bufferOut.flip();
+			if (largeFrame.hasRemaining()) {
+				gather[0] = bufferOut;
+				gather[1] = largeFrame;
+				metrics.written(sc.write(gather));
+			} else {
+				metrics.written(sc.write(bufferOut));
+			}
 			bufferOut.compact();
-			updateInterestOps();
+			if (!largeFrame.hasRemaining()) {
+				application.bufferPool.release(largeFrame);
+				largeFrame = EMPTY;
+			}
+			processOut();
 		}
 
 		private void silentlyClose() {
@@ -470,10 +1841,30 @@ public class Application {
 			} catch (IOException e) {
 				// ignore exception
 			}
+			if (!released) {
+				release();
+				onMain(() -> application.lost(this));
+				flushToMain();
+			}
+		}
+
+		/* Rend les buffers au pool, une seule fois */
+		private void release() {
+			if (released) {
+				return;
+			}
+			released = true;
+			application.metrics.close(metrics);
+			application.bufferPool.release(bufferIn);
+			application.bufferPool.release(bufferOut);
+			application.bufferPool.release(largeFrame);
 		}
 	}
 
 	private void treatKey(SelectionKey key) {
+		if (selectedAt == 0) {
+			selectedAt = System.nanoTime();
+		}
 		try {
 			if (key.isValid() && key.isAcceptable()) {
 				doAccept(key);
@@ -491,6 +1882,11 @@ public class Application {
 			// lambda call in select requires to tunnel IOException
 			throw new UncheckedIOException(ioe);
 		}
+		treatContextKey(key);
+	}
+
+	/* Lecture et écriture d'une connexion, sur le sélecteur principal ou sur une boucle */
+	private void treatContextKey(SelectionKey key) {
 		try {
 			if (key.isValid() && key.isWritable()) {
 				((Context) key.attachment()).doWrite();
@@ -504,27 +1900,34 @@ public class Application {
 		}
 	}
 
+	/*
+	 * Rattache ce noeud à un nouveau parent. La demande de travail faite à l'ancien ne sera jamais
+	 * servie : doConnect annonce la capacité et redemande du travail au nouveau.
+	 */
 	private void connect(int port) throws IOException {
+		waitingWork = false;
 		sc.close();
 		sc = SocketChannel.open();
 		sc.configureBlocking(false);
 		serverAddress = new InetSocketAddress("localhost", port);
 		var key = sc.register(selector, SelectionKey.OP_CONNECT);
-		uniqueContext = new Context(this, key);
+		uniqueContext = new Context(this, key, "parent " + serverAddress, null);
 		key.attach(uniqueContext);
 		sc.connect(serverAddress);
 	}
 
 	private void disconnect() throws IOException {
 		if (serverAddress != null) {
-			for (SelectionKey key : selector.keys()) {
-				if (!key.isValid() || key.attachment() == null || key.equals(uniqueContext.key)) {
-					continue;
-				}
-				Context ctx = (Context) key.attachment();
-				ctx.queueDisconnect(serverAddress.getPort());
-				ctx.silentlyClose();
+			leaving = true;
+			for (var child : children()) {
+				child.disconnect(serverAddress.getPort());
+			}
+			for (var loop : loops) {
+				loop.shutdown();
 			}
+			workers.shutdownNow();
+			checkerCache.clear();
+			resultCache.close();
 			serverSocketChannel.close();
 			sc.close();
 			selector.close();
@@ -532,6 +1935,10 @@ public class Application {
 	}
 
 	private void silentlyClose(SelectionKey key) {
+		if (key.attachment() instanceof Context context) {
+			context.silentlyClose();
+			return;
+		}
 		Channel sc = (Channel) key.channel();
 		try {
 			sc.close();
@@ -540,14 +1947,44 @@ public class Application {
 		}
 	}
 
+	/*
+	 * port chemin [boucles] pour la racine, port chemin hôte port [boucles] sinon. L'option --workers=N,
+	 * à n'importe quelle place, remplace le nombre de processeurs comme nombre de threads de calcul, et
+	 * --speculation=N le nombre de copies spéculatives en cours (0 pour ne jamais en faire).
+	 * --result-cache=N et --result-cache-disk=N donnent la taille du cache de résultats en Mio, en
+	 * mémoire (0 pour le désactiver) et sur disque (0 par défaut, le cache n'est pas gardé).
+	 */
 	public static void main(String[] args) throws NumberFormatException, IOException, InterruptedException {
-		if (args.length == 2) {
+		var workers = DEFAULT_WORKERS;
+		var speculation = DEFAULT_SPECULATION;
+		var resultCacheMemory = DEFAULT_RESULT_CACHE_MEMORY;
+		var resultCacheDisk = DEFAULT_RESULT_CACHE_DISK;
+		var positional = new ArrayList<String>();
+		for (var arg : args) {
+			if (arg.startsWith("--workers=")) {
+				workers = Integer.parseInt(arg.substring("--workers=".length()));
+			} else if (arg.startsWith("--speculation=")) {
+				speculation = Integer.parseInt(arg.substring("--speculation=".length()));
+			} else if (arg.startsWith("--result-cache=")) {
+				resultCacheMemory = Integer.parseInt(arg.substring("--result-cache=".length()));
+			} else if (arg.startsWith("--result-cache-disk=")) {
+				resultCacheDisk = Integer.parseInt(arg.substring("--result-cache-disk=".length()));
+			} else {
+				positional.add(arg);
+			}
+		}
+		args = positional.toArray(String[]::new);
+		if (args.length == 2 || args.length == 3) {
 			/* The application is ROOT */
-			new Application(Integer.parseInt(args[0]), args[1]).launch();
-		} else if (args.length == 4) {
+			new Application(Integer.parseInt(args[0]), args[1], null,
+					args.length == 3 ? Integer.parseInt(args[2]) : 0, workers, speculation,
+					resultCacheMemory, resultCacheDisk).launch();
+		} else if (args.length == 4 || args.length == 5) {
 			/* The application is no ROOT */
 			new Application(Integer.parseInt(args[0]), args[1],
-					new InetSocketAddress(args[2], Integer.parseInt(args[3]))).launch();
+					new InetSocketAddress(args[2], Integer.parseInt(args[3])),
+					args.length == 5 ? Integer.parseInt(args[4]) : 0, workers, speculation,
+					resultCacheMemory, resultCacheDisk).launch();
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package fr.uge.ugegreed;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Format binaire des résultats :
+ *   en-tête : MAGIC, VERSION, nom du codec, nombre de lignes puis lignes de l'en-tête texte
+ *   blocs   : taille brute, taille compressée, plus petite et plus grande valeur, nombre de résultats,
+ *             puis le contenu compressé, rangé par colonnes pour que le codec y trouve des répétitions :
+ *             les valeurs en varint zigzag de l'écart à la précédente, les tailles en varint, puis les
+ *             chaînes UTF-8 à la suite
+ *   index   : INDEX_MAGIC, nombre de blocs, (position, plus petite et plus grande valeur, nombre)
+ *             par bloc, puis la position de l'index et INDEX_MAGIC en fin de fichier
+ * Un fichier interrompu n'a pas d'index, BinaryResultReader retrouve alors les blocs un par un.
+ */
+public class BinaryResultFormat implements ResultFormat {
+    public static final int MAGIC = 0x55475242; // UGRB
+    public static final int INDEX_MAGIC = 0x55475249; // UGRI
+    public static final byte VERSION = 1;
+    public static final int BLOCK_HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES * 2;
+    public static final int INDEX_ENTRY_SIZE = Long.BYTES * 3 + Integer.BYTES;
+    public static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int BLOCK_SIZE = 256 * 1_024;
+
+    private final DataOutputStream output;
+    private final BlockCodec codec;
+    private final int blockSize;
+    private final boolean sortedIndex;
+    private final ArrayList<BinaryResultReader.Block> blocks = new ArrayList<>();
+    private final Column values = new Column();
+    private final Column lengths = new Column();
+    private final Column payloads = new Column();
+    private long previous;
+    private int count;
+    private long first = Long.MAX_VALUE;
+    private long last = Long.MIN_VALUE;
+    /* Position dans le fichier de la fin de ce qui a été écrit */
+    private long position;
+
+    public BinaryResultFormat(OutputStream output, BlockCodec codec) {
+        this(output, codec, BLOCK_SIZE, false);
+    }
+
+    /* Blocs d'environ blockSize octets bruts ; sortedIndex range l'index par première valeur */
+    protected BinaryResultFormat(OutputStream output, BlockCodec codec, int blockSize, boolean sortedIndex) {
+        this.output = new DataOutputStream(new BufferedOutputStream(Objects.requireNonNull(output)));
+        this.codec = Objects.requireNonNull(codec);
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.blockSize = blockSize;
+        this.sortedIndex = sortedIndex;
+    }
+
+    @Override
+    public void start(List<String> header) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeUTF(codec.name());
+        output.writeInt(header.size());
+        for (var line : header) {
+            output.writeUTF(line);
+        }
+        position = output.size();
+    }
+
+    @Override
+    public void resume(Path path, long offset) throws IOException {
+        try (var reader = BinaryResultReader.scan(path, offset)) {
+            if (!reader.codec().equals(codec.name())) {
+                throw new IOException(path + " uses codec " + reader.codec());
+            }
+            blocks.addAll(reader.blocks());
+        }
+        position = offset;
+    }
+
+    @Override
+    public void write(Result result) throws IOException {
+        var bytes = result.result().getBytes(StandardCharsets.UTF_8);
+        var delta = result.value() - previous;
+        values.putVarLong((delta << 1) ^ (delta >> 63));
+        lengths.putVarLong(bytes.length);
+        payloads.put(bytes, bytes.length);
+        previous = result.value();
+        count++;
+        first = Math.min(first, result.value());
+        last = Math.max(last, result.value());
+        if (values.size + lengths.size + payloads.size >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    /* Termine le bloc en cours, le suivant commence au prochain résultat */
+    protected void cut() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+    }
+
+    /* Les blocs partiels restent en mémoire pour garder un bon taux de compression */
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public int buffered() {
+        return count;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        try (output) {
+            if (count > 0) {
+                writeBlock();
+            }
+            if (sortedIndex) {
+                blocks.sort(Comparator.comparingLong(BinaryResultReader.Block::first));
+            }
+            var indexPosition = position;
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(blocks.size());
+            for (var entry : blocks) {
+                output.writeLong(entry.offset());
+                output.writeLong(entry.first());
+                output.writeLong(entry.last());
+                output.writeInt(entry.count());
+            }
+            output.writeLong(indexPosition);
+            output.writeInt(INDEX_MAGIC);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        var raw = new Column();
+        raw.put(values.bytes, values.size);
+        raw.put(lengths.bytes, lengths.size);
+        raw.put(payloads.bytes, payloads.size);
+        var compressed = codec.compress(raw.bytes, raw.size);
+        output.writeInt(raw.size);
+        output.writeInt(compressed.length);
+        output.writeLong(first);
+        output.writeLong(last);
+        output.writeInt(count);
+        output.write(compressed);
+        blocks.add(new BinaryResultReader.Block(position, first, last, count));
+        position += BLOCK_HEADER_SIZE + compressed.length;
+        values.size = 0;
+        lengths.size = 0;
+        payloads.size = 0;
+        previous = 0;
+        count = 0;
+        first = Long.MAX_VALUE;
+        last = Long.MIN_VALUE;
+    }
+
+    /* Tableau d'octets extensible */
+    static final class Column {
+        private byte[] bytes = new byte[1_024];
+        private int size;
+
+        void put(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        void putVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensure(int length) {
+            if (bytes.length - size < length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + length));
+            }
+        }
+    }
+}
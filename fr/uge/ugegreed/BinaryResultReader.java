@@ -0,0 +1,161 @@
+package fr.uge.ugegreed;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Lecture d'un fichier écrit par BinaryResultFormat, bloc par bloc */
+public class BinaryResultReader implements AutoCloseable {
+    public record Block(long offset, long first, long last, int count) {
+    }
+
+    private final FileChannel channel;
+    private final BlockCodec codec;
+    private final List<String> header;
+    private final List<Block> blocks;
+
+    private BinaryResultReader(Path path, long limit) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var input = new DataInputStream(Channels.newInputStream(channel.position(0)));
+            if (input.readInt() != BinaryResultFormat.MAGIC) {
+                throw new IOException(path + " is not a binary result file");
+            }
+            if (input.readByte() != BinaryResultFormat.VERSION) {
+                throw new IOException(path + " has an unknown version");
+            }
+            codec = BlockCodec.of(input.readUTF());
+            var lines = new ArrayList<String>();
+            for (var i = input.readInt(); i > 0; i--) {
+                lines.add(input.readUTF());
+            }
+            header = List.copyOf(lines);
+            var start = channel.position();
+            blocks = limit < 0 ? index(start) : scan(start, limit);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static BinaryResultReader open(Path path) throws IOException {
+        return new BinaryResultReader(path, -1);
+    }
+
+    /* Ouvre un fichier sans index en relisant les en-têtes des blocs jusqu'à limit */
+    public static BinaryResultReader scan(Path path, long limit) throws IOException {
+        return new BinaryResultReader(path, limit);
+    }
+
+    public String codec() {
+        return codec.name();
+    }
+
+    public List<String> header() {
+        return header;
+    }
+
+    public List<Block> blocks() {
+        return blocks;
+    }
+
+    public List<Result> read(Block block) throws IOException {
+        var blockHeader = readFully(block.offset(), BinaryResultFormat.BLOCK_HEADER_SIZE);
+        var rawLength = blockHeader.getInt();
+        var compressedLength = blockHeader.getInt();
+        var compressed = readFully(block.offset() + BinaryResultFormat.BLOCK_HEADER_SIZE, compressedLength);
+        var raw = ByteBuffer.wrap(codec.decompress(compressed.array(), rawLength));
+        var values = new long[block.count()];
+        var previous = 0L;
+        for (var i = 0; i < values.length; i++) {
+            var zigzag = varLong(raw);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = previous;
+        }
+        var lengths = new int[block.count()];
+        for (var i = 0; i < lengths.length; i++) {
+            lengths[i] = (int) varLong(raw);
+        }
+        var results = new ArrayList<Result>(block.count());
+        for (var i = 0; i < values.length; i++) {
+            results.add(new Result(values[i], new String(raw.array(), raw.position(), lengths[i], StandardCharsets.UTF_8)));
+            raw.position(raw.position() + lengths[i]);
+        }
+        return results;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* Index de fin de fichier, ou parcours des blocs s'il est absent */
+    private List<Block> index(long start) throws IOException {
+        var size = channel.size();
+        if (size - start >= BinaryResultFormat.TRAILER_SIZE) {
+            var trailer = readFully(size - BinaryResultFormat.TRAILER_SIZE, BinaryResultFormat.TRAILER_SIZE);
+            var indexPosition = trailer.getLong();
+            if (trailer.getInt() == BinaryResultFormat.INDEX_MAGIC && indexPosition >= start
+                    && indexPosition <= size - BinaryResultFormat.TRAILER_SIZE - Integer.BYTES * 2) {
+                var indexHeader = readFully(indexPosition, Integer.BYTES * 2);
+                if (indexHeader.getInt() == BinaryResultFormat.INDEX_MAGIC) {
+                    var count = indexHeader.getInt();
+                    var entries = readFully(indexPosition + Integer.BYTES * 2,
+                            count * BinaryResultFormat.INDEX_ENTRY_SIZE);
+                    var list = new ArrayList<Block>(count);
+                    for (var i = 0; i < count; i++) {
+                        list.add(new Block(entries.getLong(), entries.getLong(), entries.getLong(), entries.getInt()));
+                    }
+                    return list;
+                }
+            }
+        }
+        return scan(start, size);
+    }
+
+    private List<Block> scan(long start, long limit) throws IOException {
+        var list = new ArrayList<Block>();
+        var offset = start;
+        while (limit - offset >= BinaryResultFormat.BLOCK_HEADER_SIZE) {
+            var blockHeader = readFully(offset, BinaryResultFormat.BLOCK_HEADER_SIZE);
+            blockHeader.getInt();
+            var compressedLength = blockHeader.getInt();
+            var end = offset + BinaryResultFormat.BLOCK_HEADER_SIZE + compressedLength;
+            if (compressedLength < 0 || end > limit) {
+                break;
+            }
+            list.add(new Block(offset, blockHeader.getLong(), blockHeader.getLong(), blockHeader.getInt()));
+            offset = end;
+        }
+        return list;
+    }
+
+    static long varLong(ByteBuffer buffer) throws IOException {
+        var value = 0L;
+        for (var shift = 0; shift < Long.SIZE; shift += 7) {
+            var b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private ByteBuffer readFully(long position, int size) throws IOException {
+        var buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,47 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Compression d'un bloc du format binaire de résultats. Le nom du codec est écrit dans l'en-tête
+ * du fichier pour que le lecteur retrouve le même.
+ */
+public interface BlockCodec {
+    List<String> NAMES = List.of("deflate", "none");
+
+    String name();
+
+    /* Bloc compressé des length premiers octets de raw */
+    byte[] compress(byte[] raw, int length);
+
+    /* Bloc d'origine, de rawLength octets */
+    byte[] decompress(byte[] compressed, int rawLength) throws IOException;
+
+    static BlockCodec of(String name) {
+        switch (name) {
+            case "deflate":
+                return new DeflateCodec();
+            case "none":
+                return new BlockCodec() {
+                    @Override
+                    public String name() {
+                        return "none";
+                    }
+
+                    @Override
+                    public byte[] compress(byte[] raw, int length) {
+                        return Arrays.copyOf(raw, length);
+                    }
+
+                    @Override
+                    public byte[] decompress(byte[] compressed, int rawLength) {
+                        return compressed;
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("unknown codec " + name);
+        }
+    }
+}
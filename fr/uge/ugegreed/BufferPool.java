@@ -0,0 +1,71 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Pool de ByteBuffer directs par classes de taille (puissances de deux de MIN_SIZE à MAX_SIZE).
+ * Les buffers rendus sont gardés pour les prochaines connexions, au plus MAX_CACHED par classe.
+ */
+public class BufferPool {
+    public static final int MIN_SIZE = 4 * 1_024;
+    public static final int MAX_SIZE = 1_024 * 1_024;
+    private static final int MAX_CACHED = 64;
+
+    private final ConcurrentLinkedQueue<ByteBuffer>[] free;
+    private final AtomicInteger[] cached;
+
+    @SuppressWarnings("unchecked")
+    public BufferPool() {
+        var classes = Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+        free = (ConcurrentLinkedQueue<ByteBuffer>[]) new ConcurrentLinkedQueue<?>[classes];
+        cached = new AtomicInteger[classes];
+        for (var i = 0; i < classes; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+            cached[i] = new AtomicInteger();
+        }
+    }
+
+    /* Buffer vide (mode écriture) d'au moins size octets, hors pool au-delà de MAX_SIZE */
+    public ByteBuffer acquire(int size) {
+        if (size > MAX_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        var index = classOf(size);
+        var buffer = free[index].poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(MIN_SIZE << index);
+        }
+        cached[index].decrementAndGet();
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        var capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity < MIN_SIZE || capacity > MAX_SIZE || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        var index = classOf(capacity);
+        if (cached[index].incrementAndGet() > MAX_CACHED) {
+            cached[index].decrementAndGet();
+            return;
+        }
+        free[index].add(buffer.clear());
+    }
+
+    /* Remplace un buffer (mode écriture) par un plus grand contenant les mêmes données */
+    public ByteBuffer grow(ByteBuffer buffer, int size) {
+        var bigger = acquire(size);
+        bigger.put(buffer.flip());
+        release(buffer);
+        return bigger;
+    }
+
+    private static int classOf(int size) {
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+}
@@ -0,0 +1,297 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/*
+ * Cache LRU des checkers chargés, indexé par (jar, empreinte SHA-256 du jar, nom de la classe).
+ * Un checker est pris par acquire et rendu par Lease.close : un class loader évincé n'est fermé
+ * qu'une fois rendu par toutes les feuilles qui l'utilisent encore, une classe chargée tard par le
+ * checker le trouve donc toujours ouvert. Une instance est partagée entre les threads quand la classe
+ * n'a aucun champ d'instance, sinon chaque thread a la sienne.
+ * Le chargement d'un checker (classe, initialiseur statique, instance) et le hash du jar se font hors
+ * du verrou : les feuilles qui veulent le même checker attendent son chargement, les autres non.
+ */
+public class CheckerCache {
+    private static final Logger logger = Logger.getLogger(CheckerCache.class.getName());
+
+    private record Key(String jar, String hash, String fullyQualifiedName) {
+    }
+
+    private record Fingerprint(long lastModified, long size, String hash) {
+    }
+
+    private static final class Loaded {
+        private final URLClassLoader loader;
+        private final Checker shared;
+        private final ThreadLocal<Checker> perThread;
+        /* Feuilles qui utilisent un checker du loader, gardé par le verrou de entries */
+        private int users;
+        private boolean evicted;
+
+        private Loaded(URLClassLoader loader, Checker shared, ThreadLocal<Checker> perThread) {
+            this.loader = loader;
+            this.shared = shared;
+            this.perThread = perThread;
+        }
+
+        private Checker checker() {
+            return shared != null ? shared : perThread.get();
+        }
+    }
+
+    /* Un checker pris dans le cache, à rendre par close quand la feuille a fini */
+    public final class Lease implements AutoCloseable {
+        private final Loaded entry;
+        private final Checker checker;
+        private boolean closed;
+
+        private Lease(Loaded entry, Checker checker) {
+            this.entry = entry;
+            this.checker = checker;
+        }
+
+        public Checker checker() {
+            return checker;
+        }
+
+        @Override
+        public void close() {
+            synchronized (entries) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+
+    private final LinkedHashMap<Key, Loaded> entries;
+    /* Checkers en cours de chargement, gardé par le verrou de entries ; null si le chargement a échoué */
+    private final HashMap<Key, CompletableFuture<Loaded>> loading = new HashMap<>();
+    private final ConcurrentHashMap<Path, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CheckerCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Loaded> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                retire(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public Optional<Lease> acquire(Path jarPath, String className) {
+        Objects.requireNonNull(jarPath);
+        Objects.requireNonNull(className);
+        String hash;
+        try {
+            hash = hash(jarPath);
+        } catch (IOException e) {
+            logger.info("Impossible de lire le jar " + jarPath);
+            return Optional.empty();
+        }
+        var key = new Key(jarPath.toString(), hash, className);
+        Loaded entry;
+        while (true) {
+            CompletableFuture<Loaded> pending;
+            var loads = false;
+            synchronized (entries) {
+                entry = entries.get(key);
+                if (entry != null) {
+                    hits.increment();
+                    entry.users++;
+                    break;
+                }
+                pending = loading.get(key);
+                if (pending == null) {
+                    misses.increment();
+                    pending = new CompletableFuture<>();
+                    loading.put(key, pending);
+                    loads = true;
+                }
+            }
+            if (!loads) {
+                /* Chargé par une autre feuille : repris dans entries au tour suivant, s'il y est encore */
+                if (pending.join() == null) {
+                    return Optional.empty();
+                }
+                continue;
+            }
+            entry = null;
+            try {
+                entry = load(jarPath, className);
+            } finally {
+                synchronized (entries) {
+                    loading.remove(key);
+                    if (entry != null) {
+                        entries.put(key, entry);
+                        entry.users++;
+                    }
+                }
+                pending.complete(entry);
+            }
+            if (entry == null) {
+                return Optional.empty();
+            }
+            break;
+        }
+        try {
+            return Optional.of(new Lease(entry, entry.checker()));
+        } catch (IllegalStateException e) {
+            logger.info("Failed to create an instance of %s".formatted(className));
+            synchronized (entries) {
+                release(entry);
+            }
+            return Optional.empty();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(CheckerCache::retire);
+            entries.clear();
+            fingerprints.clear();
+        }
+    }
+
+    /* Le hash n'est recalculé que si le jar a changé sur le disque ; deux feuilles peuvent le calculer ensemble */
+    private String hash(Path jarPath) throws IOException {
+        var lastModified = Files.getLastModifiedTime(jarPath).toMillis();
+        var size = Files.size(jarPath);
+        var fingerprint = fingerprints.get(jarPath);
+        if (fingerprint != null && fingerprint.lastModified() == lastModified && fingerprint.size() == size) {
+            return fingerprint.hash();
+        }
+        var hash = sha256(jarPath);
+        fingerprints.put(jarPath, new Fingerprint(lastModified, size, hash));
+        return hash;
+    }
+
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        try (var input = Files.newInputStream(path)) {
+            var chunk = new byte[8_192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                digest.update(chunk, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static Loaded load(Path jarPath, String className) {
+        URL url;
+        try {
+            url = jarPath.toUri().toURL();
+        } catch (MalformedURLException e) {
+            logger.info("URL is malformed");
+            return null;
+        }
+        var loader = new URLClassLoader(new URL[] { url }, Thread.currentThread().getContextClassLoader());
+        try {
+            var clazz = Class.forName(className, true, loader);
+            if (!Checker.class.isAssignableFrom(clazz)) {
+                throw new ClassCastException();
+            }
+            var constructor = clazz.getDeclaredConstructor();
+            if (isStateless(clazz)) {
+                return new Loaded(loader, (Checker) constructor.newInstance(), null);
+            }
+            return new Loaded(loader, null, ThreadLocal.withInitial(() -> {
+                try {
+                    return (Checker) constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        } catch (ClassNotFoundException e) {
+            logger.info("The class %s was not found in %s. The jarfile might not be present at the given URL."
+                    .formatted(className, url));
+        } catch (NoSuchMethodException | ClassCastException e) {
+            logger.info("Class %s in jar %s cannot be cast to fr.uge.ugegreed.Checker".formatted(className, url));
+        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e) {
+            logger.info("Failed to create an instance of %s".formatted(className));
+        } catch (LinkageError e) {
+            /* Initialiseur statique en échec, classe dépendante absente du jar... */
+            logger.info("Failed to load %s from %s: %s".formatted(className, url, e));
+        }
+        close(loader);
+        return null;
+    }
+
+    /* Sans champ d'instance, une même instance peut servir à tous les threads */
+    private static boolean isStateless(Class<?> clazz) {
+        for (var current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (var field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* Sorti du cache : fermé tout de suite s'il n'est plus utilisé, sinon par le dernier Lease rendu */
+    private static void retire(Loaded entry) {
+        entry.evicted = true;
+        if (entry.users == 0) {
+            close(entry.loader);
+        }
+    }
+
+    private static void release(Loaded entry) {
+        entry.users--;
+        if (entry.evicted && entry.users == 0) {
+            close(entry.loader);
+        }
+    }
+
+    private static void close(URLClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            // ignore exception
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.uge.ugegreed;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Octets et trames échangés sur une connexion, lus par JMX et STATS hors du thread du sélecteur */
+public class ConnectionMetrics implements ConnectionMetricsMXBean {
+    private final String name;
+    private final Metrics metrics;
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder framesIn = new LongAdder();
+    private final LongAdder framesOut = new LongAdder();
+    private volatile int queueConjectureDepth;
+
+    /* Les compteurs sont aussi ajoutés aux totaux du noeud */
+    ConnectionMetrics(String name, Metrics metrics) {
+        this.name = Objects.requireNonNull(name);
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    public void read(long bytes) {
+        bytesIn.add(bytes);
+        metrics.bytesIn.add(bytes);
+    }
+
+    public void written(long bytes) {
+        bytesOut.add(bytes);
+        metrics.bytesOut.add(bytes);
+    }
+
+    public void frameIn() {
+        framesIn.increment();
+        metrics.framesIn.increment();
+    }
+
+    public void frameOut() {
+        framesOut.increment();
+        metrics.framesOut.increment();
+    }
+
+    public void queueConjectureDepth(int depth) {
+        queueConjectureDepth = depth;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getFramesIn() {
+        return framesIn.sum();
+    }
+
+    @Override
+    public long getFramesOut() {
+        return framesOut.sum();
+    }
+
+    @Override
+    public int getQueueConjectureDepth() {
+        return queueConjectureDepth;
+    }
+
+    @Override
+    public String toString() {
+        return name + " : in " + getBytesIn() + " o / " + getFramesIn() + " trames, out " + getBytesOut() + " o / "
+                + getFramesOut() + " trames, queueConjecture " + getQueueConjectureDepth();
+    }
+}
@@ -0,0 +1,16 @@
+package fr.uge.ugegreed;
+
+/* Compteurs d'une connexion exposés en JMX */
+public interface ConnectionMetricsMXBean {
+    String getName();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getFramesIn();
+
+    long getFramesOut();
+
+    int getQueueConjectureDepth();
+}
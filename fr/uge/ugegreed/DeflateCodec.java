@@ -0,0 +1,55 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/* Codec java.util.zip, le Deflater et l'Inflater sont réutilisés d'un bloc à l'autre */
+public class DeflateCodec implements BlockCodec {
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final Inflater inflater = new Inflater(true);
+    private byte[] output = new byte[4 * 1_024];
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public byte[] compress(byte[] raw, int length) {
+        deflater.reset();
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+        var size = 0;
+        while (!deflater.finished()) {
+            if (size == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            size += deflater.deflate(output, size, output.length - size);
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressed, int rawLength) throws IOException {
+        inflater.reset();
+        /* Octet factice requis par l'Inflater sans en-tête zlib */
+        inflater.setInput(Arrays.copyOf(compressed, compressed.length + 1));
+        var raw = new byte[rawLength];
+        try {
+            var size = 0;
+            while (size < rawLength) {
+                var inflated = inflater.inflate(raw, size, rawLength - size);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("truncated block");
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return raw;
+    }
+}
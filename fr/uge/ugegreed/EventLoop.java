@@ -0,0 +1,70 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Boucle d'événements sur son propre thread : un sélecteur, les connexions qui y sont enregistrées,
+ * et une file de tâches remises par les autres threads (enregistrement d'un canal, trames à envoyer).
+ * Tout ce qui touche à une connexion de la boucle s'exécute sur son thread.
+ */
+public class EventLoop {
+    private static final Logger logger = Logger.getLogger(EventLoop.class.getName());
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Consumer<SelectionKey> handler;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean stopped;
+
+    public EventLoop(String name, Consumer<SelectionKey> handler) throws IOException {
+        this.handler = Objects.requireNonNull(handler);
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public Selector selector() {
+        return selector;
+    }
+
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /* Exécute la tâche sur le thread de la boucle, après celles déjà remises */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /* Arrête la boucle une fois les tâches déjà remises exécutées */
+    public void shutdown() {
+        execute(() -> stopped = true);
+    }
+
+    private void run() {
+        try (selector) {
+            while (!stopped && !Thread.interrupted()) {
+                selector.select(handler);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Boucle " + thread.getName() + " arrêtée", e);
+        }
+    }
+}
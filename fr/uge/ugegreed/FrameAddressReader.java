@@ -34,6 +34,16 @@ public class FrameAddressReader implements Reader<FrameAddress> {
         return ProcessStatus.DONE;
     }
 
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        if (bb.remaining() < Integer.BYTES) {
+            return ProcessStatus.REFILL;
+        }
+        port = bb.getInt();
+        statePort = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
     @Override
     public FrameAddress get() {
         if (statePort != State.DONE) {
@@ -0,0 +1,6 @@
+package fr.uge.ugegreed;
+
+/* Les valeurs start -> end de la conjecture (src, id) ne sont plus à calculer */
+public record FrameCancel(int src, int id, long start, long end) {
+
+}
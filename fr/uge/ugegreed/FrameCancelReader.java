@@ -0,0 +1,120 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+
+public class FrameCancelReader implements Reader<FrameCancel> {
+    private enum State {
+        DONE, WAITING, ERROR
+    };
+
+    private State stateSrc = State.WAITING;
+    private State stateId = State.WAITING;
+    private State stateStart = State.WAITING;
+    private State stateEnd = State.WAITING;
+
+    private final IntReader intReader = new IntReader();
+    private final LongReader longReader = new LongReader();
+
+    private int src;
+    private int id;
+    private long start;
+    private long end;
+
+    @Override
+    public ProcessStatus process(ByteBuffer bb) {
+        if (stateSrc == State.ERROR || stateId == State.ERROR || stateStart == State.ERROR || stateEnd == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (stateSrc != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateSrc = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateSrc = State.DONE;
+                src = intReader.get();
+                intReader.reset();
+            }
+        }
+        if (stateId != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateId = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateId = State.DONE;
+                id = intReader.get();
+                intReader.reset();
+            }
+        }
+        if (stateStart != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateStart = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateStart = State.DONE;
+                start = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (stateEnd != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateEnd = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateEnd = State.DONE;
+                end = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (end < start) {
+            return ProcessStatus.ERROR;
+        }
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        if (bb.remaining() < Integer.BYTES * 2 + Long.BYTES * 2) {
+            return ProcessStatus.REFILL;
+        }
+        src = bb.getInt();
+        id = bb.getInt();
+        start = bb.getLong();
+        end = bb.getLong();
+        if (end < start) {
+            return ProcessStatus.ERROR;
+        }
+        stateSrc = State.DONE;
+        stateId = State.DONE;
+        stateStart = State.DONE;
+        stateEnd = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public FrameCancel get() {
+        if (stateSrc != State.DONE || stateId != State.DONE || stateStart != State.DONE || stateEnd != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return new FrameCancel(src, id, start, end);
+    }
+
+    @Override
+    public void reset() {
+        stateSrc = State.WAITING;
+        stateId = State.WAITING;
+        stateStart = State.WAITING;
+        stateEnd = State.WAITING;
+    }
+}
@@ -0,0 +1,5 @@
+package fr.uge.ugegreed;
+
+public record FrameCapacity(int processors, long pending, long valuesPerSecond) {
+
+}
@@ -0,0 +1,102 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+
+public class FrameCapacityReader implements Reader<FrameCapacity> {
+    private enum State {
+        DONE, WAITING, ERROR
+    };
+
+    private State stateProcessors = State.WAITING;
+    private State statePending = State.WAITING;
+    private State stateValuesPerSecond = State.WAITING;
+
+    private final IntReader intReader = new IntReader();
+    private final LongReader longReader = new LongReader();
+
+    private int processors;
+    private long pending;
+    private long valuesPerSecond;
+
+    @Override
+    public ProcessStatus process(ByteBuffer bb) {
+        if (stateProcessors == State.ERROR || statePending == State.ERROR || stateValuesPerSecond == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (stateProcessors != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateProcessors = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateProcessors = State.DONE;
+                processors = intReader.get();
+                intReader.reset();
+            }
+        }
+        if (statePending != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                statePending = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                statePending = State.DONE;
+                pending = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (stateValuesPerSecond != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateValuesPerSecond = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateValuesPerSecond = State.DONE;
+                valuesPerSecond = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (processors <= 0 || pending < 0 || valuesPerSecond < 0) {
+            return ProcessStatus.ERROR;
+        }
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        if (bb.remaining() < Integer.BYTES + Long.BYTES * 2) {
+            return ProcessStatus.REFILL;
+        }
+        processors = bb.getInt();
+        pending = bb.getLong();
+        valuesPerSecond = bb.getLong();
+        if (processors <= 0 || pending < 0 || valuesPerSecond < 0) {
+            return ProcessStatus.ERROR;
+        }
+        stateProcessors = State.DONE;
+        statePending = State.DONE;
+        stateValuesPerSecond = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public FrameCapacity get() {
+        if (stateProcessors != State.DONE || statePending != State.DONE || stateValuesPerSecond != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return new FrameCapacity(processors, pending, valuesPerSecond);
+    }
+
+    @Override
+    public void reset() {
+        stateProcessors = State.WAITING;
+        statePending = State.WAITING;
+        stateValuesPerSecond = State.WAITING;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.uge.ugegreed;
 
-public record FrameConjecture(int src, int dst, int id, int start, int end, String urlJar, String fullyQualifiedName, String filename) {
+/* weight : poids de la conjecture dans l'ordonnancement (deficit round robin) des pools */
+public record FrameConjecture(int src, int dst, int id, int weight, long start, long end, String urlJar, String fullyQualifiedName, String filename) {
 
 }
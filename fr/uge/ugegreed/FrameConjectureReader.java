@@ -10,6 +10,7 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
     private State stateSrc = State.WAITING;
     private State stateDst = State.WAITING;
     private State stateId = State.WAITING;
+    private State stateWeight = State.WAITING;
     private State stateStart = State.WAITING;
     private State stateEnd = State.WAITING;
     private State stateUrlJar = State.WAITING;
@@ -17,20 +18,25 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
     private State stateFilename = State.WAITING;
 
     private IntReader intReader = new IntReader();
+    private LongReader longReader = new LongReader();
     private StringReader stringReader = new StringReader();
+    private final StringDecoder urlJarDecoder = new StringDecoder();
+    private final StringDecoder fullyQualifiedNameDecoder = new StringDecoder();
+    private final StringDecoder filenameDecoder = new StringDecoder();
 
     private int src;
     private int dst;
     private int id;
-    private int start;
-    private int end;
+    private int weight;
+    private long start;
+    private long end;
     private String urlJar;
     private String fullyQualifiedName;
     private String filename;
 
     @Override
     public ProcessStatus process(ByteBuffer bb) {
-        if (stateSrc != State.WAITING && stateId != State.WAITING && stateId != State.WAITING && stateStart != State.WAITING && stateEnd != State.WAITING && stateUrlJar != State.WAITING && stateFullyQualifiedName != State.WAITING && stateFilename != State.WAITING) {
+        if (stateSrc != State.WAITING && stateId != State.WAITING && stateWeight != State.WAITING && stateStart != State.WAITING && stateEnd != State.WAITING && stateUrlJar != State.WAITING && stateFullyQualifiedName != State.WAITING && stateFilename != State.WAITING) {
             throw new IllegalStateException();
         }
         if (stateSrc != State.DONE) {
@@ -72,8 +78,24 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
                 intReader.reset();
             }
         }
-        if (stateStart != State.DONE) {
+        if (stateWeight != State.DONE) {
             ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateWeight = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            }
+            weight = intReader.get();
+            intReader.reset();
+            if (weight <= 0) {
+                stateWeight = State.ERROR;
+                return ProcessStatus.ERROR;
+            }
+            stateWeight = State.DONE;
+        }
+        if (stateStart != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
             if (status == ProcessStatus.ERROR) {
                 stateStart = State.ERROR;
                 return ProcessStatus.ERROR;
@@ -81,12 +103,12 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
                 return ProcessStatus.REFILL;
             } else {
                 stateStart = State.DONE;
-                start = intReader.get();
-                intReader.reset();
+                start = longReader.get();
+                longReader.reset();
             }
         }
         if (stateEnd != State.DONE) {
-            ProcessStatus status = intReader.process(bb);
+            ProcessStatus status = longReader.process(bb);
             if (status == ProcessStatus.ERROR) {
                 stateEnd = State.ERROR;
                 return ProcessStatus.ERROR;
@@ -94,8 +116,8 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
                 return ProcessStatus.REFILL;
             } else {
                 stateEnd = State.DONE;
-                end = intReader.get();
-                intReader.reset();
+                end = longReader.get();
+                longReader.reset();
             }
         }
         if (stateUrlJar != State.DONE) {
@@ -140,12 +162,56 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
         return ProcessStatus.DONE;
     }
 
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        var offset = bb.position();
+        var urlJarOffset = offset + Integer.BYTES * 4 + Long.BYTES * 2;
+        if (bb.limit() < urlJarOffset) {
+            return ProcessStatus.REFILL;
+        }
+        var fullyQualifiedNameOffset = StringDecoder.end(bb, urlJarOffset);
+        if (fullyQualifiedNameOffset < 0) {
+            return StringDecoder.statusOf(fullyQualifiedNameOffset);
+        }
+        var filenameOffset = StringDecoder.end(bb, fullyQualifiedNameOffset);
+        if (filenameOffset < 0) {
+            return StringDecoder.statusOf(filenameOffset);
+        }
+        var frameEnd = StringDecoder.end(bb, filenameOffset);
+        if (frameEnd < 0) {
+            return StringDecoder.statusOf(frameEnd);
+        }
+        src = bb.getInt(offset);
+        dst = bb.getInt(offset + Integer.BYTES);
+        id = bb.getInt(offset + Integer.BYTES * 2);
+        weight = bb.getInt(offset + Integer.BYTES * 3);
+        if (weight <= 0) {
+            return ProcessStatus.ERROR;
+        }
+        start = bb.getLong(offset + Integer.BYTES * 4);
+        end = bb.getLong(offset + Integer.BYTES * 4 + Long.BYTES);
+        urlJar = urlJarDecoder.decode(bb, urlJarOffset);
+        fullyQualifiedName = fullyQualifiedNameDecoder.decode(bb, fullyQualifiedNameOffset);
+        filename = filenameDecoder.decode(bb, filenameOffset);
+        bb.position(frameEnd);
+        stateSrc = State.DONE;
+        stateDst = State.DONE;
+        stateId = State.DONE;
+        stateWeight = State.DONE;
+        stateStart = State.DONE;
+        stateEnd = State.DONE;
+        stateUrlJar = State.DONE;
+        stateFullyQualifiedName = State.DONE;
+        stateFilename = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
     @Override
     public FrameConjecture get() {
-        if (stateSrc != State.DONE || stateDst != State.DONE || stateId != State.DONE || stateStart != State.DONE || stateEnd != State.DONE || stateUrlJar != State.DONE || stateFullyQualifiedName != State.DONE || stateFilename != State.DONE) {
+        if (stateSrc != State.DONE || stateDst != State.DONE || stateId != State.DONE || stateWeight != State.DONE || stateStart != State.DONE || stateEnd != State.DONE || stateUrlJar != State.DONE || stateFullyQualifiedName != State.DONE || stateFilename != State.DONE) {
             throw new IllegalStateException();
         }
-        return new FrameConjecture(src, dst, id, start, end, urlJar, fullyQualifiedName, filename);
+        return new FrameConjecture(src, dst, id, weight, start, end, urlJar, fullyQualifiedName, filename);
     }
 
     @Override
@@ -153,6 +219,7 @@ public class FrameConjectureReader implements Reader<FrameConjecture> {
         stateSrc = State.WAITING;
         stateDst = State.WAITING;
         stateId = State.WAITING;
+        stateWeight = State.WAITING;
         stateStart = State.WAITING;
         stateEnd = State.WAITING;
         stateUrlJar = State.WAITING;
@@ -0,0 +1,153 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Encodage des trames directement dans le buffer de sortie. Les tailles sont calculées en octets UTF-8
+ * sans encoder ; les chaînes ASCII sont copiées octet par octet et les autres passent par un encodeur
+ * et un CharBuffer réutilisés : aucune allocation par trame.
+ * Une instance n'est pas thread-safe, chaque Context a la sienne.
+ */
+public class FrameEncoder {
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(256);
+
+    /* Taille en octets d'une trame, opcode compris */
+    public static int size(Object frame) {
+        if (frame instanceof FrameConjecture frameConjecture) {
+            return Integer.BYTES * 8 + Long.BYTES * 2 + utf8Length(frameConjecture.urlJar())
+                    + utf8Length(frameConjecture.fullyQualifiedName()) + utf8Length(frameConjecture.filename());
+        }
+        if (frame instanceof FrameResult frameResult) {
+            var size = Integer.BYTES * 5 + utf8Length(frameResult.filename());
+            var results = frameResult.results();
+            for (var i = 0; i < results.size(); i++) {
+                size += size(results.get(i));
+            }
+            return size;
+        }
+        if (frame instanceof FrameAddress || frame instanceof FrameRequest) {
+            return Integer.BYTES * 2;
+        }
+        if (frame instanceof FrameCapacity) {
+            return Integer.BYTES * 2 + Long.BYTES * 2;
+        }
+        if (frame instanceof FrameCancel) {
+            return Integer.BYTES * 3 + Long.BYTES * 2;
+        }
+        if (frame instanceof FrameJar frameJar) {
+            return Integer.BYTES * 3 + Long.BYTES * 2 + utf8Length(frameJar.hash()) + frameJar.chunk().remaining();
+        }
+        throw new IllegalArgumentException("unknown frame " + frame);
+    }
+
+    /* Taille d'un enregistrement dans une trame de résultats : valeur, marque d'erreur et résultat */
+    public static int size(Result result) {
+        return Long.BYTES + Byte.BYTES + Integer.BYTES + utf8Length(result.result());
+    }
+
+    /* Nombre d'octets de la chaîne en UTF-8, un surrogate isolé étant remplacé par un octet */
+    public static int utf8Length(String text) {
+        var length = 0;
+        for (var i = 0; i < text.length(); i++) {
+            var c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /* Écrit la trame si elle tient dans le buffer (en mode écriture), sinon ne touche à rien */
+    public boolean encode(Object frame, ByteBuffer buffer) {
+        if (buffer.remaining() < size(frame)) {
+            return false;
+        }
+        if (frame instanceof FrameConjecture frameConjecture) {
+            buffer.putInt(0);
+            buffer.putInt(frameConjecture.src());
+            buffer.putInt(frameConjecture.dst());
+            buffer.putInt(frameConjecture.id());
+            buffer.putInt(frameConjecture.weight());
+            buffer.putLong(frameConjecture.start());
+            buffer.putLong(frameConjecture.end());
+            putString(frameConjecture.urlJar(), buffer);
+            putString(frameConjecture.fullyQualifiedName(), buffer);
+            putString(frameConjecture.filename(), buffer);
+        } else if (frame instanceof FrameResult frameResult) {
+            buffer.putInt(1);
+            buffer.putInt(frameResult.src());
+            buffer.putInt(frameResult.id());
+            putString(frameResult.filename(), buffer);
+            buffer.putInt(frameResult.results().size());
+            var results = frameResult.results();
+            for (var i = 0; i < results.size(); i++) {
+                buffer.putLong(results.get(i).value());
+                buffer.put(results.get(i).error() ? (byte) 1 : (byte) 0);
+                putString(results.get(i).result(), buffer);
+            }
+        } else if (frame instanceof FrameAddress frameAddress) {
+            buffer.putInt(2);
+            buffer.putInt(frameAddress.port());
+        } else if (frame instanceof FrameRequest frameRequest) {
+            buffer.putInt(3);
+            buffer.putInt(frameRequest.wanted());
+        } else if (frame instanceof FrameCapacity frameCapacity) {
+            buffer.putInt(4);
+            buffer.putInt(frameCapacity.processors());
+            buffer.putLong(frameCapacity.pending());
+            buffer.putLong(frameCapacity.valuesPerSecond());
+        } else if (frame instanceof FrameCancel frameCancel) {
+            buffer.putInt(6);
+            buffer.putInt(frameCancel.src());
+            buffer.putInt(frameCancel.id());
+            buffer.putLong(frameCancel.start());
+            buffer.putLong(frameCancel.end());
+        } else if (frame instanceof FrameJar frameJar) {
+            buffer.putInt(5);
+            putString(frameJar.hash(), buffer);
+            buffer.putLong(frameJar.size());
+            buffer.putLong(frameJar.offset());
+            buffer.putInt(frameJar.chunk().remaining());
+            buffer.put(frameJar.chunk().duplicate());
+        }
+        return true;
+    }
+
+    private void putString(String text, ByteBuffer buffer) {
+        var length = utf8Length(text);
+        buffer.putInt(length);
+        if (length == text.length()) {
+            for (var i = 0; i < length; i++) {
+                var c = text.charAt(i);
+                buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+            }
+            return;
+        }
+        if (chars.capacity() < text.length()) {
+            chars = CharBuffer.allocate(Math.max(text.length(), chars.capacity() * 2));
+        }
+        chars.clear();
+        text.getChars(0, text.length(), chars.array(), 0);
+        chars.limit(text.length());
+        encoder.reset();
+        encoder.encode(chars, buffer, true);
+        encoder.flush(buffer);
+    }
+}
@@ -0,0 +1,8 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+
+/* Morceau du jar d'empreinte hash (SHA-256 en hexadécimal) et de taille size, commençant à offset */
+public record FrameJar(String hash, long size, long offset, ByteBuffer chunk) {
+
+}
@@ -0,0 +1,176 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+
+public class FrameJarReader implements Reader<FrameJar> {
+    private enum State {
+        DONE, WAITING, ERROR
+    };
+
+    private State stateHash = State.WAITING;
+    private State stateSize = State.WAITING;
+    private State stateOffset = State.WAITING;
+    private State stateLength = State.WAITING;
+    private State stateChunk = State.WAITING;
+
+    private final IntReader intReader = new IntReader();
+    private final LongReader longReader = new LongReader();
+    private final StringReader stringReader = new StringReader();
+    private final StringDecoder hashDecoder = new StringDecoder();
+
+    private String hash;
+    private long size;
+    private long offset;
+    private ByteBuffer chunk;
+
+    @Override
+    public ProcessStatus process(ByteBuffer bb) {
+        if (stateHash == State.ERROR || stateSize == State.ERROR || stateOffset == State.ERROR
+                || stateLength == State.ERROR || stateChunk == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (stateHash != State.DONE) {
+            ProcessStatus status = stringReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateHash = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                hash = stringReader.get();
+                stringReader.reset();
+                if (!JarCache.validHash(hash)) {
+                    stateHash = State.ERROR;
+                    return ProcessStatus.ERROR;
+                }
+                stateHash = State.DONE;
+            }
+        }
+        if (stateSize != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateSize = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateSize = State.DONE;
+                size = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (stateOffset != State.DONE) {
+            ProcessStatus status = longReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateOffset = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateOffset = State.DONE;
+                offset = longReader.get();
+                longReader.reset();
+            }
+        }
+        if (stateLength != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateLength = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                var length = intReader.get();
+                intReader.reset();
+                if (!valid(size, offset, length)) {
+                    stateLength = State.ERROR;
+                    return ProcessStatus.ERROR;
+                }
+                chunk = ByteBuffer.allocate(length);
+                stateLength = State.DONE;
+            }
+        }
+        bb.flip();
+        try {
+            if (bb.remaining() <= chunk.remaining()) {
+                chunk.put(bb);
+            } else {
+                var oldLimit = bb.limit();
+                bb.limit(bb.position() + chunk.remaining());
+                chunk.put(bb);
+                bb.limit(oldLimit);
+            }
+        } finally {
+            bb.compact();
+        }
+        if (chunk.hasRemaining()) {
+            return ProcessStatus.REFILL;
+        }
+        chunk.flip();
+        stateChunk = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        var hashOffset = bb.position();
+        var sizeOffset = StringDecoder.end(bb, hashOffset);
+        if (sizeOffset < 0) {
+            return StringDecoder.statusOf(sizeOffset);
+        }
+        var chunkOffset = sizeOffset + Long.BYTES * 2 + Integer.BYTES;
+        if (bb.limit() < chunkOffset) {
+            return ProcessStatus.REFILL;
+        }
+        var frameSize = bb.getLong(sizeOffset);
+        var frameOffset = bb.getLong(sizeOffset + Long.BYTES);
+        var length = bb.getInt(sizeOffset + Long.BYTES * 2);
+        if (!valid(frameSize, frameOffset, length)) {
+            return ProcessStatus.ERROR;
+        }
+        if (bb.limit() - chunkOffset < length) {
+            return ProcessStatus.REFILL;
+        }
+        var frameHash = hashDecoder.decode(bb, hashOffset);
+        if (!JarCache.validHash(frameHash)) {
+            return ProcessStatus.ERROR;
+        }
+        hash = frameHash;
+        size = frameSize;
+        offset = frameOffset;
+        chunk = ByteBuffer.allocate(length);
+        chunk.put(0, bb, chunkOffset, length);
+        bb.position(chunkOffset + length);
+        stateHash = State.DONE;
+        stateSize = State.DONE;
+        stateOffset = State.DONE;
+        stateLength = State.DONE;
+        stateChunk = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    /* Un morceau d'au plus JarCache.CHUNK_SIZE octets, à l'intérieur d'un jar qui peut être projeté en mémoire */
+    private static boolean valid(long size, long offset, int length) {
+        return size >= 0 && size <= Integer.MAX_VALUE && offset >= 0 && length >= 0
+                && length <= JarCache.CHUNK_SIZE && offset + length <= size;
+    }
+
+    @Override
+    public FrameJar get() {
+        if (stateHash != State.DONE || stateSize != State.DONE || stateOffset != State.DONE
+                || stateLength != State.DONE || stateChunk != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return new FrameJar(hash, size, offset, chunk);
+    }
+
+    @Override
+    public void reset() {
+        stateHash = State.WAITING;
+        stateSize = State.WAITING;
+        stateOffset = State.WAITING;
+        stateLength = State.WAITING;
+        stateChunk = State.WAITING;
+        chunk = null;
+    }
+}
@@ -0,0 +1,5 @@
+package fr.uge.ugegreed;
+
+public record FrameRequest(int wanted) {
+
+}
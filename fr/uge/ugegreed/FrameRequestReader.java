@@ -0,0 +1,59 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+
+public class FrameRequestReader implements Reader<FrameRequest> {
+    private enum State {
+        DONE, WAITING, ERROR
+    };
+
+    private State stateWanted = State.WAITING;
+
+    private final IntReader intReader = new IntReader();
+
+    private int wanted;
+
+    @Override
+    public ProcessStatus process(ByteBuffer bb) {
+        if (stateWanted != State.WAITING) {
+            throw new IllegalStateException();
+        }
+        if (stateWanted != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateWanted = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateWanted = State.DONE;
+                wanted = intReader.get();
+                intReader.reset();
+            }
+        }
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        if (bb.remaining() < Integer.BYTES) {
+            return ProcessStatus.REFILL;
+        }
+        wanted = bb.getInt();
+        stateWanted = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public FrameRequest get() {
+        if (stateWanted != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return new FrameRequest(wanted);
+    }
+
+    @Override
+    public void reset() {
+        stateWanted = State.WAITING;
+    }
+}
\ No newline at end of file
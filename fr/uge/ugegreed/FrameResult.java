@@ -0,0 +1,7 @@
+package fr.uge.ugegreed;
+
+import java.util.List;
+
+public record FrameResult(int src, int id, String filename, List<Result> results) {
+
+}
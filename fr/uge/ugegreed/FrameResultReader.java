@@ -0,0 +1,217 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+public class FrameResultReader implements Reader<FrameResult> {
+    private enum State {
+        DONE, WAITING, ERROR
+    };
+
+    private State stateSrc = State.WAITING;
+    private State stateId = State.WAITING;
+    private State stateFilename = State.WAITING;
+    private State stateCount = State.WAITING;
+    private State stateValue = State.WAITING;
+    private State stateError = State.WAITING;
+    private State stateResult = State.WAITING;
+
+    private final IntReader intReader = new IntReader();
+    private final LongReader longReader = new LongReader();
+    private final StringReader stringReader = new StringReader();
+    private final StringDecoder filenameDecoder = new StringDecoder();
+    private final StringDecoder resultDecoder = new StringDecoder();
+
+    private int src;
+    private int id;
+    private String filename;
+    private int count;
+    private long value;
+    private boolean error;
+    private ArrayList<Result> results = new ArrayList<>();
+
+    @Override
+    public ProcessStatus process(ByteBuffer bb) {
+        if (stateSrc == State.ERROR || stateId == State.ERROR || stateFilename == State.ERROR
+                || stateCount == State.ERROR || stateValue == State.ERROR || stateError == State.ERROR
+                || stateResult == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (stateSrc != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateSrc = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateSrc = State.DONE;
+                src = intReader.get();
+                intReader.reset();
+            }
+        }
+        if (stateId != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateId = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateId = State.DONE;
+                id = intReader.get();
+                intReader.reset();
+            }
+        }
+        if (stateFilename != State.DONE) {
+            ProcessStatus status = stringReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateFilename = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                stateFilename = State.DONE;
+                filename = stringReader.get();
+                stringReader.reset();
+            }
+        }
+        if (stateCount != State.DONE) {
+            ProcessStatus status = intReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateCount = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                count = intReader.get();
+                intReader.reset();
+                if (count < 0) {
+                    stateCount = State.ERROR;
+                    return ProcessStatus.ERROR;
+                }
+                stateCount = State.DONE;
+            }
+        }
+        while (results.size() < count) {
+            if (stateValue != State.DONE) {
+                ProcessStatus status = longReader.process(bb);
+                if (status == ProcessStatus.ERROR) {
+                    stateValue = State.ERROR;
+                    return ProcessStatus.ERROR;
+                } else if (status == ProcessStatus.REFILL) {
+                    return ProcessStatus.REFILL;
+                } else {
+                    stateValue = State.DONE;
+                    value = longReader.get();
+                    longReader.reset();
+                }
+            }
+            if (stateError != State.DONE) {
+                bb.flip();
+                try {
+                    if (!bb.hasRemaining()) {
+                        return ProcessStatus.REFILL;
+                    }
+                    var flag = bb.get();
+                    if (flag != 0 && flag != 1) {
+                        stateError = State.ERROR;
+                        return ProcessStatus.ERROR;
+                    }
+                    error = flag == 1;
+                    stateError = State.DONE;
+                } finally {
+                    bb.compact();
+                }
+            }
+            ProcessStatus status = stringReader.process(bb);
+            if (status == ProcessStatus.ERROR) {
+                stateResult = State.ERROR;
+                return ProcessStatus.ERROR;
+            } else if (status == ProcessStatus.REFILL) {
+                return ProcessStatus.REFILL;
+            } else {
+                results.add(new Result(value, stringReader.get(), error));
+                stringReader.reset();
+                stateValue = State.WAITING;
+                stateError = State.WAITING;
+            }
+        }
+        stateResult = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus processFast(ByteBuffer bb) {
+        var offset = bb.position();
+        var filenameOffset = offset + Integer.BYTES * 2;
+        if (bb.limit() < filenameOffset) {
+            return ProcessStatus.REFILL;
+        }
+        var countOffset = StringDecoder.end(bb, filenameOffset);
+        if (countOffset < 0) {
+            return StringDecoder.statusOf(countOffset);
+        }
+        if (bb.limit() - countOffset < Integer.BYTES) {
+            return ProcessStatus.REFILL;
+        }
+        var frameCount = bb.getInt(countOffset);
+        if (frameCount < 0) {
+            return ProcessStatus.ERROR;
+        }
+        var position = countOffset + Integer.BYTES;
+        for (var i = 0; i < frameCount; i++) {
+            if (bb.limit() - position < Long.BYTES + Byte.BYTES) {
+                return ProcessStatus.REFILL;
+            }
+            var flag = bb.get(position + Long.BYTES);
+            if (flag != 0 && flag != 1) {
+                return ProcessStatus.ERROR;
+            }
+            position = StringDecoder.end(bb, position + Long.BYTES + Byte.BYTES);
+            if (position < 0) {
+                return StringDecoder.statusOf(position);
+            }
+        }
+        src = bb.getInt(offset);
+        id = bb.getInt(offset + Integer.BYTES);
+        filename = filenameDecoder.decode(bb, filenameOffset);
+        count = frameCount;
+        results.ensureCapacity(frameCount);
+        position = countOffset + Integer.BYTES;
+        for (var i = 0; i < frameCount; i++) {
+            var resultOffset = position + Long.BYTES + Byte.BYTES;
+            results.add(new Result(bb.getLong(position), resultDecoder.decodeUnique(bb, resultOffset),
+                    bb.get(position + Long.BYTES) == 1));
+            position = StringDecoder.end(bb, resultOffset);
+        }
+        bb.position(position);
+        stateSrc = State.DONE;
+        stateId = State.DONE;
+        stateFilename = State.DONE;
+        stateCount = State.DONE;
+        stateResult = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public FrameResult get() {
+        if (stateSrc != State.DONE || stateId != State.DONE || stateFilename != State.DONE
+                || stateCount != State.DONE || stateResult != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return new FrameResult(src, id, filename, results);
+    }
+
+    @Override
+    public void reset() {
+        stateSrc = State.WAITING;
+        stateId = State.WAITING;
+        stateFilename = State.WAITING;
+        stateCount = State.WAITING;
+        stateValue = State.WAITING;
+        stateError = State.WAITING;
+        stateResult = State.WAITING;
+        results = new ArrayList<>();
+    }
+}
@@ -0,0 +1,81 @@
+package fr.uge.ugegreed;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Histogramme de durées en nanosecondes, sans verrou : une case par puissance de deux, la case i
+ * comptant les durées de [2^(i-1), 2^i[. Les percentiles sont donnés à la borne haute de leur case.
+ */
+public class Histogram {
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (var i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /* Compte n durées égales en une seule mise à jour */
+    public void record(long nanos, long n) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].add(n);
+        count.add(n);
+        total.add(nanos * n);
+        max.accumulate(nanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long meanNanos() {
+        var n = count.sum();
+        return n == 0 ? 0 : total.sum() / n;
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /* Borne haute de la case contenant le percentile (entre 0 et 100) */
+    public long percentileNanos(double percentile) {
+        var counts = new long[buckets.length];
+        var n = 0L;
+        for (var i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        var rank = (long) Math.ceil(n * percentile / 100);
+        var seen = 0L;
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : i == Long.SIZE ? Long.MAX_VALUE : (1L << i) - 1, maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    /* "n=.. mean=.. p50=.. p99=.. max=.." en microsecondes */
+    public String summary() {
+        return "n=" + count() + " mean=" + micros(meanNanos()) + "µs p50=" + micros(percentileNanos(50))
+                + "µs p99=" + micros(percentileNanos(99)) + "µs max=" + micros(maxNanos()) + "µs";
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f", nanos / 1_000.0);
+    }
+}
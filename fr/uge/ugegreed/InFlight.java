@@ -0,0 +1,173 @@
+package fr.uge.ugegreed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Valeurs confiées à un fils et pas encore acquittées. Un résultat remontant par ce fils acquitte
+ * sa valeur, une plage qu'il rend lors d'un vol n'est plus à sa charge. Si la connexion tombe,
+ * drain() rend ce qui reste pour le redistribuer. Chaque plage confiée est aussi suivie avec son
+ * heure d'envoi, pour mesurer le temps de calcul des plages et repérer celles qui traînent.
+ */
+public class InFlight {
+    private record Key(int src, int id) {
+    }
+
+    /* Valeurs restantes d'une conjecture, et une plage d'origine pour en reconstruire les trames */
+    private record Ranges(FrameConjecture template, IntervalSet values) {
+    }
+
+    /* Plage envoyée d'un coup, suivie tant qu'il lui reste des valeurs non acquittées */
+    public static final class Grant {
+        private final FrameConjecture range;
+        private final long grantedAt;
+        /* Copie spéculative, ou plage déjà copiée : ni l'une ni l'autre ne fait une mesure fiable */
+        private boolean speculative;
+
+        private Grant(FrameConjecture range, long grantedAt, boolean speculative) {
+            this.range = range;
+            this.grantedAt = grantedAt;
+            this.speculative = speculative;
+        }
+
+        public FrameConjecture range() {
+            return range;
+        }
+
+        public long grantedAt() {
+            return grantedAt;
+        }
+
+        public boolean speculative() {
+            return speculative;
+        }
+
+        public void speculated() {
+            speculative = true;
+        }
+    }
+
+    private final HashMap<Key, Ranges> ranges = new HashMap<>();
+    private final ArrayList<Grant> grants = new ArrayList<>();
+
+    public void add(FrameConjecture range) {
+        add(range, false);
+    }
+
+    public void add(FrameConjecture range, boolean speculative) {
+        Objects.requireNonNull(range);
+        ranges.computeIfAbsent(new Key(range.src(), range.id()), key -> new Ranges(range, new IntervalSet()))
+                .values().add(range.start(), range.end());
+        grants.add(new Grant(range, System.nanoTime(), speculative));
+    }
+
+    public void remove(FrameConjecture range) {
+        remove(range.src(), range.id(), range.start(), range.end());
+    }
+
+    public void remove(int src, int id, long start, long end) {
+        var key = new Key(src, id);
+        var entry = ranges.get(key);
+        if (entry == null) {
+            return;
+        }
+        entry.values().remove(start, end);
+        if (entry.values().isEmpty()) {
+            ranges.remove(key);
+        }
+        prune(key);
+    }
+
+    /* Acquitte les résultats et renvoie les plages qu'ils terminent */
+    public List<Grant> acknowledge(int src, int id, List<Result> results) {
+        var key = new Key(src, id);
+        var entry = ranges.get(key);
+        if (entry == null) {
+            return List.of();
+        }
+        for (var result : results) {
+            entry.values().remove(result.value(), result.value());
+        }
+        if (entry.values().isEmpty()) {
+            ranges.remove(key);
+        }
+        return prune(key);
+    }
+
+    /* Nombre de valeurs de start -> end encore à la charge du fils */
+    public long count(int src, int id, long start, long end) {
+        var entry = ranges.get(new Key(src, id));
+        return entry == null ? 0 : entry.values().count(start, end);
+    }
+
+    /* Morceaux de la plage encore à la charge du fils */
+    public List<FrameConjecture> pending(FrameConjecture range) {
+        var entry = ranges.get(new Key(range.src(), range.id()));
+        if (entry == null) {
+            return List.of();
+        }
+        return frames(range, entry.values().intersection(range.start(), range.end()));
+    }
+
+    /* Morceaux de la plage qui ne sont pas à la charge du fils */
+    public List<FrameConjecture> missing(FrameConjecture range) {
+        var entry = ranges.get(new Key(range.src(), range.id()));
+        if (entry == null) {
+            return List.of(range);
+        }
+        return frames(range, entry.values().gaps(range.start(), range.end()));
+    }
+
+    public List<Grant> grants() {
+        return Collections.unmodifiableList(grants);
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /* Plages non acquittées, retirées du suivi */
+    public List<FrameConjecture> drain() {
+        var frames = new ArrayList<FrameConjecture>();
+        for (var entry : ranges.values()) {
+            var template = entry.template();
+            for (var interval : entry.values().intervals()) {
+                frames.add(new FrameConjecture(template.src(), template.dst(), template.id(), template.weight(),
+                        interval.start(), interval.end(), template.urlJar(), template.fullyQualifiedName(), template.filename()));
+            }
+        }
+        ranges.clear();
+        grants.clear();
+        return frames;
+    }
+
+    /* Retire et renvoie les plages de la conjecture dont il ne reste plus rien */
+    private List<Grant> prune(Key key) {
+        var entry = ranges.get(key);
+        var done = new ArrayList<Grant>();
+        for (var iterator = grants.iterator(); iterator.hasNext();) {
+            var grant = iterator.next();
+            var range = grant.range();
+            if (range.src() != key.src() || range.id() != key.id()) {
+                continue;
+            }
+            if (entry == null || entry.values().count(range.start(), range.end()) == 0) {
+                iterator.remove();
+                done.add(grant);
+            }
+        }
+        return done;
+    }
+
+    private static List<FrameConjecture> frames(FrameConjecture template, List<IntervalSet.Interval> intervals) {
+        var frames = new ArrayList<FrameConjecture>(intervals.size());
+        for (var interval : intervals) {
+            frames.add(new FrameConjecture(template.src(), template.dst(), template.id(), template.weight(),
+                    interval.start(), interval.end(), template.urlJar(), template.fullyQualifiedName(), template.filename()));
+        }
+        return frames;
+    }
+}
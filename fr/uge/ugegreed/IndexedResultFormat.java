@@ -0,0 +1,58 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/*
+ * Format binaire dont les blocs sont triés et disjoints : les résultats passent par un SegmentBuffer
+ * et chaque segment complet est écrit d'un coup puis coupé, en petits blocs de BLOCK_SIZE octets
+ * bruts. L'index de fin est rangé par première valeur, c'est l'index creux de ResultStore. Le fichier
+ * reste lisible par BinaryResultReader et ResultConverter.
+ */
+public class IndexedResultFormat extends BinaryResultFormat {
+    public static final String NAME = "indexed";
+    /* Petits blocs : une recherche ne décompresse qu'un bloc */
+    private static final int BLOCK_SIZE = 16 * 1_024;
+
+    private final SegmentBuffer buffer;
+
+    public IndexedResultFormat(OutputStream output, BlockCodec codec, long start, long end) {
+        super(output, codec, BLOCK_SIZE, true);
+        buffer = new SegmentBuffer(start, end);
+    }
+
+    @Override
+    public void write(Result result) throws IOException {
+        var segment = buffer.add(result);
+        if (segment != null) {
+            writeSegment(segment);
+        }
+    }
+
+    @Override
+    public int buffered() {
+        return buffer.buffered();
+    }
+
+    @Override
+    public List<IntervalSet.Interval> written() {
+        return buffer.released();
+    }
+
+    /* Les segments restés incomplets (conjecture interrompue) sont écrits tels quels */
+    @Override
+    public void finish() throws IOException {
+        for (var segment : buffer.drain()) {
+            writeSegment(segment);
+        }
+        super.finish();
+    }
+
+    private void writeSegment(SegmentBuffer.Segment segment) throws IOException {
+        for (var result : segment.results()) {
+            super.write(result);
+        }
+        cut();
+    }
+}
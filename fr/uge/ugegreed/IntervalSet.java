@@ -0,0 +1,172 @@
+package fr.uge.ugegreed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/*
+ * Ensemble de valeurs stocké comme des intervalles fermés disjoints et non adjacents,
+ * fusionnés à chaque ajout.
+ */
+public class IntervalSet {
+    public record Interval(long start, long end) {
+        public Interval {
+            if (end < start) {
+                throw new IllegalArgumentException("empty interval " + start + " -> " + end);
+            }
+        }
+
+        public long size() {
+            return end - start + 1;
+        }
+    }
+
+    /* début -> fin de chaque intervalle */
+    private final TreeMap<Long, Long> intervals = new TreeMap<>();
+    private long count;
+
+    public void add(long start, long end) {
+        if (end < start) {
+            return;
+        }
+        var before = intervals.floorEntry(start);
+        if (before != null && (before.getValue() == Long.MAX_VALUE || before.getValue() + 1 >= start)) {
+            if (before.getValue() >= end) {
+                return;
+            }
+            start = before.getKey();
+            removeEntry(before.getKey(), before.getValue());
+        }
+        for (var next = intervals.ceilingEntry(start); next != null
+                && (end == Long.MAX_VALUE || next.getKey() <= end + 1); next = intervals.ceilingEntry(start)) {
+            end = Math.max(end, next.getValue());
+            removeEntry(next.getKey(), next.getValue());
+        }
+        intervals.put(start, end);
+        count += end - start + 1;
+    }
+
+    public void remove(long start, long end) {
+        if (end < start) {
+            return;
+        }
+        var before = intervals.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            remove(before.getKey(), before.getValue(), start, end);
+        }
+        if (start == end) {
+            return;
+        }
+        for (var entry : new ArrayList<>(intervals.subMap(start + 1, true, end, true).entrySet())) {
+            remove(entry.getKey(), entry.getValue(), start, end);
+        }
+    }
+
+    public void add(Interval interval) {
+        add(interval.start(), interval.end());
+    }
+
+    public boolean contains(long value) {
+        var entry = intervals.floorEntry(value);
+        return entry != null && entry.getValue() >= value;
+    }
+
+    /* Nombre total de valeurs */
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return intervals.isEmpty();
+    }
+
+    public List<Interval> intervals() {
+        var list = new ArrayList<Interval>(intervals.size());
+        intervals.forEach((start, end) -> list.add(new Interval(start, end)));
+        return list;
+    }
+
+    /* Sous-intervalles de start -> end qui sont dans l'ensemble */
+    public List<Interval> intersection(long start, long end) {
+        var list = new ArrayList<Interval>();
+        if (end < start) {
+            return list;
+        }
+        var before = intervals.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            list.add(new Interval(start, Math.min(before.getValue(), end)));
+        }
+        if (start == end) {
+            return list;
+        }
+        for (var entry : intervals.subMap(start, false, end, true).entrySet()) {
+            list.add(new Interval(entry.getKey(), Math.min(entry.getValue(), end)));
+        }
+        return list;
+    }
+
+    /* Nombre de valeurs de start -> end qui sont dans l'ensemble */
+    public long count(long start, long end) {
+        var count = 0L;
+        for (var interval : intersection(start, end)) {
+            count += interval.size();
+        }
+        return count;
+    }
+
+    /* Sous-intervalles de start -> end qui ne sont pas dans l'ensemble */
+    public List<Interval> gaps(long start, long end) {
+        var gaps = new ArrayList<Interval>();
+        var from = start;
+        var before = intervals.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            if (before.getValue() >= end) {
+                return gaps;
+            }
+            from = before.getValue() + 1;
+        }
+        for (var entry : intervals.subMap(from, false, end, true).entrySet()) {
+            gaps.add(new Interval(from, entry.getKey() - 1));
+            if (entry.getValue() >= end) {
+                return gaps;
+            }
+            from = entry.getValue() + 1;
+        }
+        gaps.add(new Interval(from, end));
+        return gaps;
+    }
+
+    /* Intervalles couvrant des valeurs quelconques, triées au passage */
+    public static List<Interval> of(long[] values, int length) {
+        Arrays.sort(values, 0, length);
+        var list = new ArrayList<Interval>();
+        for (var i = 0; i < length;) {
+            var start = values[i];
+            var end = start;
+            while (++i < length && (values[i] == end || values[i] == end + 1)) {
+                end = values[i];
+            }
+            list.add(new Interval(start, end));
+        }
+        return list;
+    }
+
+    private void removeEntry(long start, long end) {
+        intervals.remove(start);
+        count -= end - start + 1;
+    }
+
+    /* Retire from -> to de l'intervalle start -> end, en gardant ce qui dépasse de chaque côté */
+    private void remove(long start, long end, long from, long to) {
+        removeEntry(start, end);
+        if (start < from) {
+            intervals.put(start, from - 1);
+            count += from - start;
+        }
+        if (end > to) {
+            intervals.put(to + 1, end);
+            count += end - to;
+        }
+    }
+}
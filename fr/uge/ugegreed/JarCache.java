@@ -0,0 +1,286 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/*
+ * Cache des jars sur le disque, adressé par leur empreinte SHA-256 : <répertoire>/<hash>.jar.
+ * Le noeud qui lance une conjecture y importe le jar (fichier local ou URL http, téléchargée une
+ * seule fois) et les trames de conjecture ne portent plus que la référence sha256:<hash>. Chaque
+ * connexion envoie le jar en morceaux avant la première conjecture qui l'utilise, et le noeud qui
+ * le reçoit le vérifie puis le sert à ses propres fils depuis son cache. Les morceaux reçus sont
+ * écrits et le jar vérifié par un thread dédié, jamais par le thread du sélecteur ; tant qu'il est
+ * arriving, une conjecture qui l'utilise doit attendre.
+ */
+public class JarCache {
+    private static final Logger logger = Logger.getLogger(JarCache.class.getName());
+
+    /* Préfixe d'un urlJar désignant un jar du cache */
+    public static final String PREFIX = "sha256:";
+
+    /* Taille maximale d'un morceau de jar dans une trame */
+    public static final int CHUNK_SIZE = 8 * 1_024;
+
+    /* Jar en cours de réception : received octets déjà écrits dans le fichier .part */
+    private static final class Partial {
+        private final FileChannel channel;
+        private long received;
+
+        private Partial(FileChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Path directory;
+    /* Empreinte du contenu déjà téléchargé pour chaque URL */
+    private final ConcurrentHashMap<String, String> downloaded = new ConcurrentHashMap<>();
+    /* Jars projetés en mémoire pour l'envoi, partagés par les boucles */
+    private final ConcurrentHashMap<String, ByteBuffer> contents = new ConcurrentHashMap<>();
+    /* Réceptions en cours, tenues par le thread receiver */
+    private final HashMap<String, Partial> partials = new HashMap<>();
+    /* Un seul thread : les morceaux d'un jar sont écrits dans leur ordre d'arrivée */
+    private final ExecutorService receiver = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "jar-receiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /* Jars annoncés par un premier morceau, retirés une fois dans le cache ou en échec */
+    private final Set<String> arrivals = ConcurrentHashMap.newKeySet();
+    /* Empreintes des jars complets et vérifiés du répertoire, consultées sans accès au disque */
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private HttpClient client;
+
+    public JarCache(Path directory) throws IOException {
+        this.directory = Objects.requireNonNull(directory);
+        Files.createDirectories(directory);
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(".jar") && validHash(name.substring(0, name.length() - ".jar".length()))) {
+                    stored.add(name.substring(0, name.length() - ".jar".length()));
+                }
+            }
+        }
+    }
+
+    public static boolean isReference(String urlJar) {
+        return urlJar.startsWith(PREFIX) && validHash(urlJar.substring(PREFIX.length()));
+    }
+
+    public static String hash(String reference) {
+        if (!isReference(reference)) {
+            throw new IllegalArgumentException("not a jar reference " + reference);
+        }
+        return reference.substring(PREFIX.length());
+    }
+
+    /* Une empreinte SHA-256 en hexadécimal minuscule, comme celles de CheckerCache.sha256 */
+    public static boolean validHash(String hash) {
+        if (hash.length() != 64) {
+            return false;
+        }
+        for (var i = 0; i < hash.length(); i++) {
+            var c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Path path(String hash) {
+        return directory.resolve(hash + ".jar");
+    }
+
+    /* Fichier à charger pour un urlJar : le jar du cache pour une référence, le chemin tel quel sinon */
+    public Path resolve(String urlJar) {
+        return isReference(urlJar) ? path(hash(urlJar)) : Path.of(urlJar);
+    }
+
+    /* Vrai tant que le jar de la référence est en cours de réception */
+    public boolean arriving(String urlJar) {
+        return isReference(urlJar) && arrivals.contains(hash(urlJar));
+    }
+
+    /* Vrai si le checker peut être chargé : chemin tel quel, ou référence dont le jar est dans le cache */
+    public boolean stored(String urlJar) {
+        return !isReference(urlJar) || stored.contains(hash(urlJar));
+    }
+
+    /*
+     * Importe le jar dans le cache et renvoie sa référence. Une URL http(s) n'est téléchargée qu'une
+     * fois, un fichier local est copié s'il n'est pas déjà dans le cache. Bloquant : à appeler en
+     * dehors du thread du sélecteur.
+     */
+    public String reference(String urlJar) throws IOException, InterruptedException {
+        if (isReference(urlJar)) {
+            if (!Files.exists(path(hash(urlJar)))) {
+                throw new IOException("Jar absent du cache : " + urlJar);
+            }
+            stored.add(hash(urlJar));
+            return urlJar;
+        }
+        if (urlJar.startsWith("http://") || urlJar.startsWith("https://")) {
+            var hash = downloaded.get(urlJar);
+            if (hash == null || !Files.exists(path(hash))) {
+                hash = download(urlJar);
+                downloaded.put(urlJar, hash);
+            }
+            stored.add(hash);
+            return PREFIX + hash;
+        }
+        var jar = Path.of(urlJar);
+        var hash = CheckerCache.sha256(jar);
+        if (!Files.exists(path(hash))) {
+            var temporary = Files.createTempFile(directory, hash, ".tmp");
+            Files.copy(jar, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, path(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        stored.add(hash);
+        return PREFIX + hash;
+    }
+
+    private String download(String url) throws IOException, InterruptedException {
+        synchronized (this) {
+            if (client == null) {
+                client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+            }
+        }
+        var temporary = Files.createTempFile(directory, "download", ".tmp");
+        try {
+            var response = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofFile(temporary));
+            if (response.statusCode() != 200) {
+                throw new IOException("Téléchargement de " + url + " : HTTP " + response.statusCode());
+            }
+            var hash = CheckerCache.sha256(temporary);
+            Files.move(temporary, path(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Jar téléchargé depuis " + url + " : " + hash);
+            return hash;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /* Trames transportant le jar du cache, des tranches d'un même fichier projeté en mémoire */
+    public List<FrameJar> chunks(String hash) throws IOException {
+        ByteBuffer content;
+        try {
+            content = contents.computeIfAbsent(hash, key -> {
+                try (var channel = FileChannel.open(path(key), StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        var size = content.capacity();
+        var frames = new ArrayList<FrameJar>();
+        var offset = 0;
+        do {
+            var length = Math.min(CHUNK_SIZE, size - offset);
+            frames.add(new FrameJar(hash, size, offset, content.slice(offset, length).asReadOnlyBuffer()));
+            offset += length;
+        } while (offset < size);
+        return frames;
+    }
+
+    /*
+     * Appelé par le thread du sélecteur pour un morceau reçu, ne bloque pas : le morceau est écrit par
+     * le thread receiver. Une fois le jar dans le cache, ou sa réception en échec, il n'est plus
+     * arriving et done est appelé par ce thread avec l'empreinte et null ou l'erreur.
+     */
+    public void receive(FrameJar frame, BiConsumer<String, IOException> done) {
+        var hash = frame.hash();
+        if (frame.offset() == 0) {
+            arrivals.add(hash);
+        }
+        receiver.execute(() -> {
+            try {
+                if (write(frame) && arrivals.remove(hash)) {
+                    done.accept(hash, null);
+                }
+            } catch (IOException e) {
+                arrivals.remove(hash);
+                done.accept(hash, e);
+            }
+        });
+    }
+
+    /*
+     * Écrit un morceau reçu, renvoie true quand le jar est dans le cache. Les morceaux d'un jar arrivent
+     * dans l'ordre sur une même connexion ; le dernier déclenche la vérification de l'empreinte et le
+     * jar n'apparaît dans le cache qu'ensuite. Un jar déjà présent n'est pas réécrit.
+     */
+    private boolean write(FrameJar frame) throws IOException {
+        var partial = partials.get(frame.hash());
+        if (partial == null) {
+            if (frame.offset() != 0) {
+                return false;
+            }
+            if (Files.exists(path(frame.hash()))) {
+                stored.add(frame.hash());
+                return true;
+            }
+            partial = new Partial(FileChannel.open(part(frame.hash()), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+            partials.put(frame.hash(), partial);
+        } else if (frame.offset() == 0 && partial.received > 0) {
+            /* Renvoyé depuis le début par un nouveau parent après une reconnexion */
+            partial.channel.truncate(0);
+            partial.received = 0;
+        }
+        try {
+            if (frame.offset() != partial.received) {
+                throw new IOException("Morceau inattendu du jar " + frame.hash() + " à " + frame.offset());
+            }
+            var chunk = frame.chunk().duplicate();
+            while (chunk.hasRemaining()) {
+                partial.received += partial.channel.write(chunk, partial.received);
+            }
+            if (partial.received < frame.size()) {
+                return false;
+            }
+            partials.remove(frame.hash());
+            partial.channel.close();
+            if (!CheckerCache.sha256(part(frame.hash())).equals(frame.hash())) {
+                throw new IOException("Empreinte invalide pour le jar " + frame.hash());
+            }
+            Files.move(part(frame.hash()), path(frame.hash()), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            stored.add(frame.hash());
+            return true;
+        } catch (IOException e) {
+            partials.remove(frame.hash());
+            partial.channel.close();
+            Files.deleteIfExists(part(frame.hash()));
+            throw e;
+        }
+    }
+
+    private Path part(String hash) {
+        return directory.resolve(hash + ".part");
+    }
+}
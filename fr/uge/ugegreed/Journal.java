@@ -0,0 +1,157 @@
+package fr.uge.ugegreed;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/*
+ * Journal d'avancement d'une conjecture, à côté de son fichier de résultats. La première ligne
+ * décrit la conjecture, chaque ligne suivante est ajoutée après des flushs du fichier de résultats :
+ * "<taille du fichier> <début> <fin> <début> <fin> ..." pour les valeurs qui viennent d'y être écrites.
+ * À l'ouverture, le journal est rejoué dans un IntervalSet puis réécrit en une seule ligne.
+ */
+public class Journal implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(Journal.class.getName());
+    private static final long FLUSH_PERIOD = 500;
+
+    private final Path path;
+    private final String descriptor;
+    private IntervalSet done = new IntervalSet();
+    private long offset;
+    private BufferedWriter writer;
+    /* Avancement pas encore écrit dans le journal */
+    private IntervalSet pending = new IntervalSet();
+    private long pendingOffset;
+    private long lastFlush;
+
+    private Journal(Path path, String descriptor) throws IOException {
+        this.path = path;
+        this.descriptor = descriptor;
+        if (Files.exists(path)) {
+            replay(descriptor);
+        }
+        writer = compact();
+    }
+
+    /* Réécrit le journal en une ligne pour done, renvoie le flux qui y ajoute les suivantes */
+    private BufferedWriter compact() throws IOException {
+        var compacted = Path.of(path + ".tmp");
+        try (var out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            out.write(descriptor);
+            out.newLine();
+            if (!done.isEmpty()) {
+                out.write(line(offset, done.intervals()));
+                out.newLine();
+            }
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /* Ouvre le journal de path ; un journal décrivant une autre conjecture est remis à zéro */
+    public static Journal open(Path path, String descriptor) throws IOException {
+        Objects.requireNonNull(path);
+        Objects.requireNonNull(descriptor);
+        return new Journal(path, descriptor);
+    }
+
+    /* Valeurs déjà écrites dans le fichier de résultats à l'ouverture du journal */
+    public IntervalSet done() {
+        return done;
+    }
+
+    /* Taille du fichier de résultats couvrant exactement done() */
+    public long offset() {
+        return offset;
+    }
+
+    /*
+     * Oublie l'avancement, avant toute écriture : le fichier de résultats est absent ou plus court que
+     * offset(), les valeurs de done() n'y sont plus et doivent être recalculées
+     */
+    public void reset() throws IOException {
+        writer.close();
+        done = new IntervalSet();
+        offset = 0;
+        writer = compact();
+    }
+
+    /*
+     * Appelé par le thread d'écriture une fois par group commit. Les intervalles sont fusionnés en
+     * mémoire et écrits au plus une fois par FLUSH_PERIOD : un arrêt brutal perd au plus cette
+     * période de calcul, le fichier de résultats étant tronqué à la dernière taille journalisée.
+     */
+    public void append(long offset, List<IntervalSet.Interval> intervals) throws IOException {
+        intervals.forEach(pending::add);
+        pendingOffset = offset;
+        var now = System.currentTimeMillis();
+        if (now - lastFlush >= FLUSH_PERIOD) {
+            flush();
+            lastFlush = now;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        writer.write(line(pendingOffset, pending.intervals()));
+        writer.newLine();
+        writer.flush();
+        pending = new IntervalSet();
+    }
+
+    private void replay(String descriptor) throws IOException {
+        /* Une ligne sans fin de ligne a été coupée par un arrêt brutal : ses valeurs seront recalculées */
+        var content = Files.readString(path, StandardCharsets.UTF_8);
+        var lines = content.substring(0, content.lastIndexOf('\n') + 1).lines().toList();
+        if (lines.isEmpty() || !lines.get(0).equals(descriptor)) {
+            logger.info("Journal " + path + " ignoré : autre conjecture");
+            return;
+        }
+        for (var line : lines.subList(1, lines.size())) {
+            var tokens = line.split(" ");
+            if (tokens.length < 3 || tokens.length % 2 != 1) {
+                break;
+            }
+            try {
+                var lineOffset = Long.parseLong(tokens[0]);
+                var intervals = new IntervalSet.Interval[tokens.length / 2];
+                for (var i = 0; i < intervals.length; i++) {
+                    intervals[i] = new IntervalSet.Interval(Long.parseLong(tokens[2 * i + 1]),
+                            Long.parseLong(tokens[2 * i + 2]));
+                }
+                for (var interval : intervals) {
+                    done.add(interval);
+                }
+                offset = lineOffset;
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+        }
+    }
+
+    private static String line(long offset, List<IntervalSet.Interval> intervals) {
+        var builder = new StringBuilder().append(offset);
+        for (var interval : intervals) {
+            builder.append(' ').append(interval.start()).append(' ').append(interval.end());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,305 @@
+package fr.uge.ugegreed;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Métriques d'un noeud. Les compteurs sont des LongAdder et les histogrammes sans verrou : les
+ * workers et le thread du sélecteur enregistrent sans se bloquer, JMX et la commande STATS lisent
+ * depuis leurs propres threads. Les jauges (profondeurs de files, pool) sont recopiées par tick().
+ */
+public final class Metrics implements MetricsMXBean {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+    private static final String DOMAIN = "fr.uge.ugegreed";
+    /* Périodes sans valeur calculée après lesquelles une conjecture sort des métriques */
+    private static final int IDLE_TICKS = 30;
+
+    /* Avancement d'une conjecture sur ce noeud ; last et idleTicks ne sont lus que par tick() */
+    private static final class Progress {
+        private final LongAdder checked = new LongAdder();
+        private volatile long valuesPerSecond;
+        private long last;
+        private int idleTicks;
+    }
+
+    private final String node;
+    private final LongAdder valuesChecked = new LongAdder();
+    private final LongAdder speculativeCopies = new LongAdder();
+    private final LongAdder speculativeWins = new LongAdder();
+    private final LongAdder cancelledValues = new LongAdder();
+    private final LongAdder resultCacheHits = new LongAdder();
+    private final LongAdder resultCacheMisses = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder bytesOut = new LongAdder();
+    final LongAdder framesIn = new LongAdder();
+    final LongAdder framesOut = new LongAdder();
+    private final Histogram selectLoop = new Histogram();
+    private final Histogram selectLoopBusy = new Histogram();
+    private final Histogram processCommands = new Histogram();
+    private final Histogram checkerLatency = new Histogram();
+
+    /*
+     * Valeurs calculées par conjecture, et leur débit sur la dernière période. Une conjecture en sort
+     * quand elle se termine ici (finished) ou après IDLE_TICKS périodes sans calcul : un noeud qui
+     * n'est pas la racine ne voit pas la fin des conjectures des autres.
+     */
+    private final ConcurrentHashMap<String, Progress> conjectures = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ConnectionMetrics, Boolean> connections = new ConcurrentHashMap<>();
+
+    private volatile long valuesPerSecond;
+    private volatile int queueConjectureDepth;
+    private volatile long rangePoolRemaining;
+    private volatile long resultQueueDepth;
+
+    public Metrics(String node) {
+        this.node = node;
+        register(this, "type=Metrics,node=" + node);
+    }
+
+    /* Métriques d'une nouvelle connexion, à rendre par close(connection) */
+    public ConnectionMetrics connection(String name) {
+        var connection = new ConnectionMetrics(name, this);
+        connections.put(connection, true);
+        register(connection, "type=Connection,node=" + node + ",name=" + ObjectName.quote(name));
+        return connection;
+    }
+
+    public void close(ConnectionMetrics connection) {
+        if (connections.remove(connection) == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name(
+                    "type=Connection,node=" + node + ",name=" + ObjectName.quote(connection.getName())));
+        } catch (JMException e) {
+            // déjà retiré
+        }
+    }
+
+    /* Un worker a calculé values valeurs de la conjecture lancée par src */
+    public void checked(int src, int id, long values) {
+        valuesChecked.add(values);
+        conjectures.computeIfAbsent(src + ":" + id, key -> new Progress()).checked.add(values);
+    }
+
+    /* La conjecture lancée par src est terminée */
+    public void finished(int src, int id) {
+        conjectures.remove(src + ":" + id);
+    }
+
+    /* Copie spéculative envoyée, et copie ayant rendu ses résultats avant l'original */
+    public void speculativeCopy() {
+        speculativeCopies.increment();
+    }
+
+    public void speculativeWin() {
+        speculativeWins.increment();
+    }
+
+    /* Valeurs retirées du pool de ce noeud par une annulation */
+    public void cancelled(long values) {
+        cancelledValues.add(values);
+    }
+
+    /* Valeurs trouvées dans le cache de résultats, et valeurs calculées faute d'y être */
+    public void resultCache(long hits, long misses) {
+        resultCacheHits.add(hits);
+        resultCacheMisses.add(misses);
+    }
+
+    /* Latence moyenne d'une valeur sur une feuille de values valeurs : un seul enregistrement par feuille */
+    public void checkerLatency(long nanos, long values) {
+        checkerLatency.record(nanos, values);
+    }
+
+    /* Durée d'un tour de boucle, et de la partie passée hors de l'attente du select */
+    public void selectLoop(long nanos, long busyNanos) {
+        selectLoop.record(nanos);
+        selectLoopBusy.record(busyNanos);
+    }
+
+    public void processCommands(long nanos) {
+        processCommands.record(nanos);
+    }
+
+    /* Appelé par le thread du sélecteur une fois par période */
+    public void tick(long periodNanos, long valuesPerSecond, int queueConjectureDepth, long rangePoolRemaining,
+                     long resultQueueDepth) {
+        this.valuesPerSecond = valuesPerSecond;
+        this.queueConjectureDepth = queueConjectureDepth;
+        this.rangePoolRemaining = rangePoolRemaining;
+        this.resultQueueDepth = resultQueueDepth;
+        conjectures.forEach((key, progress) -> {
+            var checked = progress.checked.sum();
+            progress.valuesPerSecond = (checked - progress.last) * 1_000_000_000 / periodNanos;
+            progress.idleTicks = checked == progress.last ? progress.idleTicks + 1 : 0;
+            progress.last = checked;
+            if (progress.idleTicks >= IDLE_TICKS) {
+                conjectures.remove(key, progress);
+            }
+        });
+    }
+
+    @Override
+    public long getValuesChecked() {
+        return valuesChecked.sum();
+    }
+
+    @Override
+    public long getValuesPerSecond() {
+        return valuesPerSecond;
+    }
+
+    @Override
+    public Map<String, Long> getValuesPerSecondByConjecture() {
+        var byConjecture = new TreeMap<String, Long>();
+        conjectures.forEach((key, progress) -> byConjecture.put(key, progress.valuesPerSecond));
+        return byConjecture;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getFramesIn() {
+        return framesIn.sum();
+    }
+
+    @Override
+    public long getFramesOut() {
+        return framesOut.sum();
+    }
+
+    @Override
+    public int getQueueConjectureDepth() {
+        return queueConjectureDepth;
+    }
+
+    @Override
+    public long getRangePoolRemaining() {
+        return rangePoolRemaining;
+    }
+
+    @Override
+    public long getResultQueueDepth() {
+        return resultQueueDepth;
+    }
+
+    @Override
+    public long getSelectLoopP99Micros() {
+        return selectLoop.percentileNanos(99) / 1_000;
+    }
+
+    @Override
+    public long getSelectLoopBusyP99Micros() {
+        return selectLoopBusy.percentileNanos(99) / 1_000;
+    }
+
+    @Override
+    public long getProcessCommandsP99Micros() {
+        return processCommands.percentileNanos(99) / 1_000;
+    }
+
+    @Override
+    public long getSpeculativeCopies() {
+        return speculativeCopies.sum();
+    }
+
+    @Override
+    public long getSpeculativeWins() {
+        return speculativeWins.sum();
+    }
+
+    @Override
+    public long getCancelledValues() {
+        return cancelledValues.sum();
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return resultCacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return resultCacheMisses.sum();
+    }
+
+    @Override
+    public double getResultCacheHitRatio() {
+        var hits = getResultCacheHits();
+        var lookups = hits + getResultCacheMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public long getCheckerLatencyP50Micros() {
+        return checkerLatency.percentileNanos(50) / 1_000;
+    }
+
+    @Override
+    public long getCheckerLatencyP99Micros() {
+        return checkerLatency.percentileNanos(99) / 1_000;
+    }
+
+    @Override
+    public long getCheckerLatencyMaxMicros() {
+        return checkerLatency.maxNanos() / 1_000;
+    }
+
+    @Override
+    public String report() {
+        var builder = new StringBuilder();
+        builder.append("Noeud ").append(node).append('\n');
+        builder.append("  valeurs calculées : ").append(getValuesChecked()).append(" (")
+                .append(getValuesPerSecond()).append("/s)\n");
+        new TreeMap<>(conjectures).forEach((key, progress) -> builder.append("    conjecture ").append(key)
+                .append(" : ").append(progress.checked.sum()).append(" (").append(progress.valuesPerSecond)
+                .append("/s)\n"));
+        builder.append("  réseau : in ").append(getBytesIn()).append(" o / ").append(getFramesIn())
+                .append(" trames, out ").append(getBytesOut()).append(" o / ").append(getFramesOut()).append(" trames\n");
+        for (var connection : connections.keySet()) {
+            builder.append("    ").append(connection).append('\n');
+        }
+        builder.append("  queueConjecture : ").append(getQueueConjectureDepth()).append(", pool : ")
+                .append(getRangePoolRemaining()).append(" valeurs, résultats à écrire : ")
+                .append(getResultQueueDepth()).append('\n');
+        builder.append("  boucle select : ").append(selectLoop.summary()).append('\n');
+        builder.append("  boucle select hors attente : ").append(selectLoopBusy.summary()).append('\n');
+        builder.append("  processCommands : ").append(processCommands.summary()).append('\n');
+        builder.append("  checker : ").append(checkerLatency.summary()).append('\n');
+        builder.append("  spéculation : ").append(getSpeculativeCopies()).append(" copies, ")
+                .append(getSpeculativeWins()).append(" gagnées, ").append(getCancelledValues())
+                .append(" valeurs annulées\n");
+        builder.append("  cache de résultats : ").append(getResultCacheHits()).append(" valeurs trouvées, ")
+                .append(getResultCacheMisses()).append(" calculées (")
+                .append(String.format("%.1f", getResultCacheHitRatio() * 100)).append(" %)\n");
+        return builder.toString();
+    }
+
+    private static ObjectName name(String properties) throws JMException {
+        return new ObjectName(DOMAIN + ":" + properties);
+    }
+
+    private static void register(Object bean, String properties) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name(properties));
+        } catch (JMException e) {
+            logger.info("Métriques non exposées en JMX : " + e.getMessage());
+        }
+    }
+}
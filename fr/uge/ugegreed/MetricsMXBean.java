@@ -0,0 +1,55 @@
+package fr.uge.ugegreed;
+
+import java.util.Map;
+
+/* Métriques d'un noeud exposées en JMX, les durées sont en microsecondes */
+public interface MetricsMXBean {
+    long getValuesChecked();
+
+    long getValuesPerSecond();
+
+    /* Débit par conjecture, clé "port:id" du noeud qui l'a lancée */
+    Map<String, Long> getValuesPerSecondByConjecture();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getFramesIn();
+
+    long getFramesOut();
+
+    int getQueueConjectureDepth();
+
+    long getRangePoolRemaining();
+
+    /* Résultats reçus par les écrivains et pas encore écrits */
+    long getResultQueueDepth();
+
+    long getSelectLoopP99Micros();
+
+    long getSelectLoopBusyP99Micros();
+
+    long getProcessCommandsP99Micros();
+
+    long getSpeculativeCopies();
+
+    long getSpeculativeWins();
+
+    long getCancelledValues();
+
+    long getResultCacheHits();
+
+    long getResultCacheMisses();
+
+    /* Part des valeurs trouvées dans le cache de résultats, entre 0 et 1 */
+    double getResultCacheHitRatio();
+
+    long getCheckerLatencyP50Micros();
+
+    long getCheckerLatencyP99Micros();
+
+    long getCheckerLatencyMaxMicros();
+
+    String report();
+}
@@ -0,0 +1,158 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Format texte rangé dans l'ordre des valeurs, quel que soit l'ordre d'arrivée des résultats. La plage
+ * est découpée en segments (SegmentBuffer) : un segment complet est trié puis ajouté au fichier de
+ * segments (<fichier>.segments, le flux reçu), et l'index (<fichier>.index) reçoit à sa place une
+ * entrée de ENTRY_SIZE octets : numéro du segment, position et taille. L'entrée 0 décrit l'en-tête.
+ * finish assemble le fichier de résultats en recopiant les segments dans l'ordre par transferTo,
+ * sans tri ni relecture des lignes ; les deux fichiers annexes sont supprimés par cleanup.
+ */
+public class OrderedResultFormat implements ResultFormat {
+    public static final String NAME = "ordered";
+    public static final int ENTRY_SIZE = Long.BYTES * 3;
+    private static final long HEADER = -1;
+
+    private record Entry(long segment, long offset, long length) {
+    }
+
+    private final OutputStream output;
+    private final Path path;
+    private final SegmentBuffer buffer;
+    private final FileChannel index;
+    private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private long position;
+
+    /* output écrit dans segments(path), start -> end est la plage de la conjecture */
+    public OrderedResultFormat(OutputStream output, Path path, long start, long end) throws IOException {
+        this.output = Objects.requireNonNull(output);
+        this.path = Objects.requireNonNull(path);
+        buffer = new SegmentBuffer(start, end);
+        index = FileChannel.open(index(path), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    public static Path segments(Path path) {
+        return Path.of(path + ".segments");
+    }
+
+    public static Path index(Path path) {
+        return Path.of(path + ".index");
+    }
+
+    @Override
+    public void start(List<String> header) throws IOException {
+        index.truncate(0);
+        var builder = new StringBuilder();
+        for (var line : header) {
+            builder.append(line).append('\n');
+        }
+        append(HEADER, builder);
+    }
+
+    /* Garde les entrées de l'index couvertes par les offset octets du fichier de segments */
+    @Override
+    public void resume(Path path, long offset) throws IOException {
+        var count = index.size() / ENTRY_SIZE;
+        var mapped = index.map(FileChannel.MapMode.READ_ONLY, 0, count * ENTRY_SIZE);
+        for (var i = 0; i < count; i++) {
+            var read = new Entry(mapped.getLong(), mapped.getLong(), mapped.getLong());
+            if (read.offset() + read.length() > offset) {
+                break;
+            }
+            entries.add(read);
+            position += read.length();
+        }
+        if (position != offset || entries.isEmpty() || entries.get(0).segment() != HEADER) {
+            throw new IOException(index(this.path) + " does not match " + path);
+        }
+        index.truncate((long) entries.size() * ENTRY_SIZE);
+    }
+
+    @Override
+    public void write(Result result) throws IOException {
+        var segment = buffer.add(result);
+        if (segment != null) {
+            writeSegment(segment);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public int buffered() {
+        return buffer.buffered();
+    }
+
+    @Override
+    public List<IntervalSet.Interval> written() {
+        return buffer.released();
+    }
+
+    /* Les segments restés incomplets (conjecture interrompue) sont écrits tels quels */
+    @Override
+    public void finish() throws IOException {
+        try (index) {
+            for (var segment : buffer.drain()) {
+                writeSegment(segment);
+            }
+            output.close();
+            var ordered = new ArrayList<>(entries);
+            ordered.sort(Comparator.comparingLong(Entry::segment));
+            try (var source = FileChannel.open(segments(path), StandardOpenOption.READ);
+                 var target = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (var entry : ordered) {
+                    for (var copied = 0L; copied < entry.length();) {
+                        copied += source.transferTo(entry.offset() + copied, entry.length() - copied, target);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(segments(path));
+        Files.deleteIfExists(index(path));
+    }
+
+    private void writeSegment(SegmentBuffer.Segment segment) throws IOException {
+        var builder = new StringBuilder();
+        for (var result : segment.results()) {
+            builder.append(result.result()).append('\n');
+        }
+        append(segment.number(), builder);
+    }
+
+    /* Ajoute le contenu au fichier de segments puis écrit son entrée à sa place dans l'index */
+    private void append(long segment, CharSequence content) throws IOException {
+        var bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        output.write(bytes);
+        var slot = (long) entries.size() * ENTRY_SIZE;
+        entries.add(new Entry(segment, position, bytes.length));
+        position += bytes.length;
+        entry.clear();
+        entry.putLong(segment).putLong(position - bytes.length).putLong(bytes.length).flip();
+        while (entry.hasRemaining()) {
+            index.write(entry, slot + entry.position());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package fr.uge.ugegreed;
+
+import java.util.Objects;
+
+/*
+ * Checker qui traite une plage d'un coup : l'initialisation, les tables de mémoïsation et les
+ * buffers de construction des chaînes sont payés une fois par plage et non une fois par valeur.
+ * checkRange doit donner un résultat pour chaque valeur de from à to inclus, dans l'ordre.
+ * Une classe qui l'implémente n'a pas à écrire check, qui passe par une plage d'une valeur.
+ */
+public interface RangeChecker extends Checker {
+    void checkRange(long from, long to, ResultSink sink) throws InterruptedException;
+
+    @Override
+    default String check(long testValue) throws InterruptedException {
+        var result = new String[1];
+        checkRange(testValue, testValue, (value, text) -> result[0] = text);
+        return result[0];
+    }
+
+    /* Le checker lui-même s'il traite les plages, sinon un adaptateur qui appelle check valeur par valeur */
+    static RangeChecker of(Checker checker) {
+        Objects.requireNonNull(checker);
+        if (checker instanceof RangeChecker rangeChecker) {
+            return rangeChecker;
+        }
+        return (from, to, sink) -> {
+            /* Compté par décalage : value <= to ne s'arrêterait jamais pour to == Long.MAX_VALUE */
+            for (var i = 0L; i <= to - from; i++) {
+                var value = from + i;
+                sink.accept(value, checker.check(value));
+            }
+        };
+    }
+}
@@ -0,0 +1,191 @@
+package fr.uge.ugegreed;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Plages de valeurs restant à distribuer sur ce noeud, rangées par conjecture (src, id). Les
+ * conjectures sont servies en deficit round robin : à son tour, une conjecture reçoit un crédit
+ * de quantum valeurs par unité de poids et donne des morceaux jusqu'à l'épuiser, puis passe
+ * derrière les autres. Une courte conjecture lancée pendant un long balayage est ainsi servie dès
+ * le tour suivant. Dans une conjecture, les morceaux sont pris en tête ; un parent qui vole du
+ * travail prend la moitié des valeurs de chaque conjecture par la queue.
+ */
+public class RangePool {
+    /* Valeurs données par tour à une conjecture de poids 1 */
+    public static final long DEFAULT_QUANTUM = 10_000;
+
+    private record Key(int src, int id) {
+    }
+
+    /* Plages d'une conjecture, son crédit du tour et son nombre de valeurs */
+    private static final class Flow {
+        private final Key key;
+        private final long quantum;
+        private final ArrayDeque<FrameConjecture> ranges = new ArrayDeque<>();
+        private long deficit;
+        private long remaining;
+
+        private Flow(Key key, long quantum) {
+            this.key = key;
+            this.quantum = quantum;
+        }
+    }
+
+    private final long quantum;
+    private final HashMap<Key, Flow> flows = new HashMap<>();
+    /* Conjectures non vides, dans l'ordre du tour */
+    private final ArrayDeque<Flow> round = new ArrayDeque<>();
+    private long remaining;
+
+    public RangePool() {
+        this(DEFAULT_QUANTUM);
+    }
+
+    public RangePool(long quantum) {
+        if (quantum <= 0) {
+            throw new IllegalArgumentException("quantum must be positive");
+        }
+        this.quantum = quantum;
+    }
+
+    public void add(FrameConjecture range) {
+        Objects.requireNonNull(range);
+        if (range.end() < range.start()) {
+            return;
+        }
+        var flow = flows.computeIfAbsent(new Key(range.src(), range.id()), key -> {
+            var created = new Flow(key, quantum * range.weight());
+            round.add(created);
+            return created;
+        });
+        flow.ranges.add(range);
+        flow.remaining += size(range);
+        remaining += size(range);
+    }
+
+    public boolean isEmpty() {
+        return round.isEmpty();
+    }
+
+    /* Nombre de valeurs restant à distribuer */
+    public long remaining() {
+        return remaining;
+    }
+
+    /*
+     * Retire au plus size valeurs de la première plage de la conjecture dont c'est le tour, et pas
+     * plus que son crédit : même seule, une conjecture ne part qu'en morceaux d'un tour, pour qu'une
+     * conjecture lancée ensuite n'attende pas derrière des parts déjà énormes.
+     */
+    public FrameConjecture take(long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        var flow = round.peek();
+        if (flow == null) {
+            return null;
+        }
+        if (flow.deficit <= 0) {
+            flow.deficit = flow.quantum;
+        }
+        size = Math.min(size, flow.deficit);
+        var head = flow.ranges.poll();
+        FrameConjecture taken;
+        if (size(head) <= size) {
+            taken = head;
+        } else {
+            var last = head.start() + size - 1;
+            flow.ranges.addFirst(withRange(head, last + 1, head.end()));
+            taken = withRange(head, head.start(), last);
+        }
+        flow.deficit -= size(taken);
+        removed(flow, size(taken));
+        /* Crédit épuisé : fin du tour de cette conjecture */
+        if (flow.deficit <= 0 && round.peek() == flow) {
+            flow.deficit = 0;
+            round.add(round.poll());
+        }
+        return taken;
+    }
+
+    /*
+     * Part guidée d'un participant de poids weight sur un total weights : la moitié de ce qui lui manque,
+     * en plus des pending valeurs qu'il a déjà, pour atteindre sa fraction du travail total (le pool
+     * plus les distributed valeurs déjà distribuées). Bornée par minimum et par le pool.
+     */
+    public long share(long distributed, double weight, double weights, long pending, long minimum) {
+        var target = (long) (((double) remaining + distributed) * (weight / weights));
+        return Math.min(remaining, Math.max(minimum, (target - pending) / 2));
+    }
+
+    /* Retire environ la moitié des valeurs restantes de chaque conjecture, en partant de la fin */
+    public List<FrameConjecture> stealHalf() {
+        var stolen = new ArrayList<FrameConjecture>();
+        for (var flow : List.copyOf(round)) {
+            var wanted = flow.remaining / 2;
+            while (wanted > 0) {
+                var tail = flow.ranges.pollLast();
+                if (size(tail) <= wanted) {
+                    stolen.add(tail);
+                    wanted -= size(tail);
+                    removed(flow, size(tail));
+                    continue;
+                }
+                var first = tail.end() - wanted + 1;
+                flow.ranges.addLast(withRange(tail, tail.start(), first - 1));
+                stolen.add(withRange(tail, first, tail.end()));
+                removed(flow, wanted);
+                wanted = 0;
+            }
+        }
+        return stolen;
+    }
+
+    /* Retire les valeurs start -> end de la conjecture (src, id), renvoie leur nombre */
+    public long cancel(int src, int id, long start, long end) {
+        var flow = flows.get(new Key(src, id));
+        if (flow == null) {
+            return 0;
+        }
+        var removed = 0L;
+        for (var i = flow.ranges.size(); i > 0; i--) {
+            var range = flow.ranges.poll();
+            if (range.end() < start || range.start() > end) {
+                flow.ranges.add(range);
+                continue;
+            }
+            if (range.start() < start) {
+                flow.ranges.add(withRange(range, range.start(), start - 1));
+            }
+            if (range.end() > end) {
+                flow.ranges.add(withRange(range, end + 1, range.end()));
+            }
+            removed += Math.min(range.end(), end) - Math.max(range.start(), start) + 1;
+        }
+        removed(flow, removed);
+        return removed;
+    }
+
+    /* Une conjecture vidée quitte le tour et perd son crédit */
+    private void removed(Flow flow, long values) {
+        flow.remaining -= values;
+        remaining -= values;
+        if (flow.ranges.isEmpty()) {
+            flows.remove(flow.key);
+            round.remove(flow);
+        }
+    }
+
+    private static long size(FrameConjecture range) {
+        return range.end() - range.start() + 1;
+    }
+
+    private static FrameConjecture withRange(FrameConjecture range, long start, long end) {
+        return new FrameConjecture(range.src(), range.dst(), range.id(), range.weight(), start, end,
+                range.urlJar(), range.fullyQualifiedName(), range.filename());
+    }
+}
@@ -0,0 +1,66 @@
+package fr.uge.ugegreed;
+
+import java.util.Objects;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Calcul d'une plage sur un ForkJoinPool. La plage est coupée en deux tant qu'elle dépasse grain
+ * valeurs et que le thread n'a pas déjà assez de tâches en attente d'être volées : un pool occupé
+ * garde de gros morceaux, un pool dont les threads attendent découpe plus fin. Chaque feuille fait
+ * au plus grain valeurs, ses résultats forment un lot.
+ */
+public class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    /* Tâches en attente au-delà desquelles on arrête de découper */
+    private static final int SURPLUS = 2;
+
+    @FunctionalInterface
+    public interface Leaf {
+        void compute(long start, long end);
+    }
+
+    private final long start;
+    private final long end;
+    private final long grain;
+    /* Une tâche n'est jamais sérialisée, ForkJoinTask l'est seulement par héritage */
+    private final transient Leaf leaf;
+
+    public RangeTask(long start, long end, long grain, Leaf leaf) {
+        if (end < start || grain <= 0) {
+            throw new IllegalArgumentException("invalid range " + start + " -> " + end + " / " + grain);
+        }
+        this.start = start;
+        this.end = end;
+        this.grain = grain;
+        this.leaf = Objects.requireNonNull(leaf);
+    }
+
+    @Override
+    protected void compute() {
+        var size = end - start + 1;
+        if (size > grain && getSurplusQueuedTaskCount() <= SURPLUS) {
+            var middle = start + size / 2;
+            var second = new RangeTask(middle, end, grain, leaf);
+            second.fork();
+            try {
+                new RangeTask(start, middle - 1, grain, leaf).invoke();
+            } finally {
+                /*
+                 * Une exception d'une moitié ne remonte qu'une fois l'autre finie : celui qui attend la
+                 * tâche ne doit pas croire la plage terminée tant qu'une feuille peut encore rendre
+                 */
+                second.quietlyJoin();
+            }
+            second.join();
+            return;
+        }
+        /* Sans voleur en vue, la plage est calculée ici, par feuilles d'au plus grain valeurs */
+        for (var offset = 0L;; offset += grain) {
+            var length = Math.min(grain, size - offset);
+            leaf.compute(start + offset, start + offset + length - 1);
+            if (length == size - offset) {
+                return;
+            }
+        }
+    }
+}
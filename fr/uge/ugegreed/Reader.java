@@ -10,6 +10,15 @@ public interface Reader<T> {
 
     public ProcessStatus process(ByteBuffer bb);
 
+    /*
+     * Chemin rapide : décode en une fois une trame entière présente dans bb (mode lecture) à partir
+     * de sa position, par accès absolus, puis avance la position. Si la trame est incomplète, renvoie
+     * REFILL sans rien consommer et la lecture se fait avec process.
+     */
+    public default ProcessStatus processFast(ByteBuffer bb) {
+        return ProcessStatus.REFILL;
+    }
+
     public T get();
 
     public void reset();
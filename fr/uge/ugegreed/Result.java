@@ -0,0 +1,17 @@
+package fr.uge.ugegreed;
+
+/*
+ * Résultat d'une valeur. error marque un résultat d'erreur (exception du checker, checker introuvable...) :
+ * il est écrit comme les autres mais n'entre jamais dans le cache de résultats.
+ */
+public record Result(long value, String result, boolean error) {
+
+    public Result(long value, String result) {
+        this(value, result, false);
+    }
+
+    /* Résultat d'erreur de la valeur */
+    public static Result failure(long value, String reason) {
+        return new Result(value, "Erreur pour la valeur " + value + " : " + reason, true);
+    }
+}
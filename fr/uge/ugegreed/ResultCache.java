@@ -0,0 +1,678 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/*
+ * Cache des résultats d'un checker, d'une conjecture à l'autre, indexé par (empreinte SHA-256 du jar,
+ * nom de la classe, valeur). Les valeurs sont rangées par segments alignés de SEGMENT_VALUES : les
+ * feuilles d'une même plage remplissent quelques segments au lieu d'ajouter chacune une entrée.
+ * Le niveau mémoire est borné en octets et évince le segment le moins récemment utilisé. Le niveau
+ * disque est facultatif (maxDiskBytes > 0) : un segment y est écrit quand il est complet, quand il
+ * sort de la mémoire ou quand flush le trouve inactif, en un fichier par suite de valeurs consécutives
+ * (directory/<empreinte>-<classe>/<début>_<fin>.bin, format binaire) ; il est borné de même et repris
+ * au démarrage.
+ * Chaque checker a son propre verrou, celui du cache ne garde que l'ordre d'utilisation et les tailles,
+ * et se prend toujours après celui du checker. Les écritures se font sur le thread result-cache, les
+ * relectures sur le thread appelant ; aucun fichier n'est lu ni écrit sous un verrou.
+ */
+public final class ResultCache {
+    private static final Logger logger = Logger.getLogger(ResultCache.class.getName());
+    private static final String SUFFIX = ".bin";
+    /* Valeurs par segment, un segment complet tient dans un seul fichier */
+    public static final int SEGMENT_VALUES = 16_384;
+    /* Délai sans ajout après lequel flush écrit un segment incomplet, en nanosecondes */
+    private static final long FLUSH_DELAY = 1_000_000_000L;
+
+    private record Key(String hash, String fullyQualifiedName) {
+    }
+
+    /* Segments d'un checker par numéro, gardés par le verrou de l'objet */
+    private static final class Segments {
+        private final Key key;
+        private final TreeMap<Long, Segment> byNumber = new TreeMap<>();
+
+        private Segments(Key key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Segment {
+        private final Segments owner;
+        private final long number;
+        /* Valeurs du segment dont le résultat est connu */
+        private final IntervalSet covered = new IntervalSet();
+        /* Résultats par position dans le segment, null quand il n'est que sur disque */
+        private String[] results;
+        /* Résultats sortis de la mémoire avant d'avoir été écrits, lus par le thread result-cache */
+        private String[] writing;
+        private long memoryBytes;
+        /* Fichiers du segment et la suite de valeurs de chacun */
+        private Map<Path, IntervalSet.Interval> files = Map.of();
+        private long diskBytes;
+        /* Des valeurs en mémoire ne sont pas encore sur disque */
+        private boolean dirty;
+        /* Une écriture est en attente sur le thread result-cache */
+        private boolean queued;
+        /* Le segment est sorti du cache */
+        private boolean dropped;
+        /* Incrémenté à chaque ajout, une écriture commencée avant un ajout laisse le segment à écrire */
+        private long version;
+        /* Dernier ajout, lu par flush */
+        private volatile long touched;
+        /* Tailles comptées dans le cache et présence dans les ordres d'utilisation, gardées par lru */
+        private long memoryAccounted;
+        private long diskAccounted;
+        private boolean inMemory;
+        private boolean onDisk;
+
+        private Segment(Segments owner, long number) {
+            this.owner = owner;
+            this.number = number;
+        }
+
+        private long first() {
+            return number * SEGMENT_VALUES;
+        }
+
+        private boolean complete() {
+            return covered.count() == SEGMENT_VALUES;
+        }
+    }
+
+    private final Path directory;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final ConcurrentHashMap<Key, Segments> segments = new ConcurrentHashMap<>();
+    /* Segments ajoutés et pas encore écrits, parcourus par flush */
+    private final Set<Segment> pending = ConcurrentHashMap.newKeySet();
+    /* Écritures sur disque, null sans niveau disque */
+    private final ExecutorService writer;
+
+    /* Ordre d'utilisation, le plus ancien en tête, et tailles totales */
+    private final Object lru = new Object();
+    private final LinkedHashMap<Segment, Boolean> inMemory = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Segment, Boolean> onDisk = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+
+    /*
+     * Sans mémoire ni disque, le cache est désactivé. Avec un niveau disque, les segments déjà écrits
+     * sont repris, du plus ancien au plus récent.
+     */
+    public ResultCache(Path directory, long maxMemoryBytes, long maxDiskBytes) throws IOException {
+        this.directory = Objects.requireNonNull(directory);
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("sizes must be positive or zero");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        if (maxDiskBytes == 0) {
+            writer = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        writer = Executors.newSingleThreadExecutor(task -> {
+            var thread = new Thread(task, "result-cache");
+            thread.setDaemon(true);
+            return thread;
+        });
+        load();
+    }
+
+    /*
+     * Clé d'un checker, null si le cache est désactivé ou si le jar n'est pas une référence du
+     * JarCache : son contenu est inconnu
+     */
+    public String hash(String urlJar) {
+        if (disabled()) {
+            return null;
+        }
+        return JarCache.isReference(urlJar) ? JarCache.hash(urlJar) : null;
+    }
+
+    /* Intervalles de start -> end dont tous les résultats sont en cache */
+    public List<IntervalSet.Interval> cached(String hash, String fullyQualifiedName, long start, long end) {
+        var forKey = segments.get(new Key(hash, fullyQualifiedName));
+        if (forKey == null) {
+            return List.of();
+        }
+        var covered = new IntervalSet();
+        synchronized (forKey) {
+            var range = forKey.byNumber.subMap(number(start), true, number(end), true);
+            for (var segment : range.values()) {
+                segment.covered.intersection(start, end).forEach(covered::add);
+            }
+        }
+        return covered.intervals();
+    }
+
+    /*
+     * Résultats des valeurs start -> end, qui doivent être couvertes par cached. Null si elles ne le
+     * sont plus ou si un segment n'a pas pu être relu : il sort alors du cache.
+     */
+    public List<Result> get(String hash, String fullyQualifiedName, long start, long end) {
+        var forKey = segments.get(new Key(hash, fullyQualifiedName));
+        if (forKey == null) {
+            return null;
+        }
+        var results = new ArrayList<Result>((int) Math.min(Integer.MAX_VALUE, end - start + 1));
+        for (var number = number(start); number <= number(end); number++) {
+            var segment = resident(forKey, number, false);
+            if (segment == null) {
+                return null;
+            }
+            var first = Math.max(start, segment.first());
+            var last = Math.min(end, segment.first() + SEGMENT_VALUES - 1);
+            synchronized (forKey) {
+                var data = segment.results != null ? segment.results : segment.writing;
+                if (data == null || segment.covered.count(first, last) != last - first + 1) {
+                    return null;
+                }
+                for (var value = first; value <= last; value++) {
+                    results.add(new Result(value, data[(int) (value - segment.first())]));
+                }
+            }
+            evictMemory();
+        }
+        return results;
+    }
+
+    /*
+     * Garde des résultats de valeurs croissantes et distinctes, seules les valeurs qui ne sont pas
+     * déjà en cache sont ajoutées
+     */
+    public void put(String hash, String fullyQualifiedName, List<Result> results) {
+        if (results.isEmpty() || disabled()) {
+            return;
+        }
+        var forKey = segments.computeIfAbsent(new Key(hash, fullyQualifiedName), Segments::new);
+        var index = 0;
+        while (index < results.size()) {
+            var number = number(results.get(index).value());
+            var next = index + 1;
+            while (next < results.size() && number(results.get(next).value()) == number) {
+                next++;
+            }
+            add(forKey, number, results.subList(index, next));
+            index = next;
+        }
+        evictMemory();
+    }
+
+    /* Met à écrire les segments restés sans ajout depuis FLUSH_DELAY, appelé régulièrement */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        var now = System.nanoTime();
+        for (var segment : pending) {
+            if (now - segment.touched >= FLUSH_DELAY && pending.remove(segment)) {
+                synchronized (segment.owner) {
+                    queue(segment);
+                }
+            }
+        }
+    }
+
+    /* Met à écrire tous les segments en attente et arrête le thread result-cache une fois écrits */
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        for (var segment : pending) {
+            synchronized (segment.owner) {
+                queue(segment);
+            }
+        }
+        pending.clear();
+        writer.shutdown();
+    }
+
+    public long memoryBytes() {
+        synchronized (lru) {
+            return memoryBytes;
+        }
+    }
+
+    public long diskBytes() {
+        synchronized (lru) {
+            return diskBytes;
+        }
+    }
+
+    private boolean disabled() {
+        return maxMemoryBytes == 0 && maxDiskBytes == 0;
+    }
+
+    private static long number(long value) {
+        return Math.floorDiv(value, SEGMENT_VALUES);
+    }
+
+    private void add(Segments forKey, long number, List<Result> part) {
+        while (true) {
+            var segment = resident(forKey, number, true);
+            synchronized (forKey) {
+                if (segment.dropped || segment.results == null) {
+                    continue;
+                }
+                var added = false;
+                for (var result : part) {
+                    var index = (int) (result.value() - segment.first());
+                    if (segment.results[index] == null) {
+                        segment.results[index] = result.result();
+                        segment.memoryBytes += 64 + 2L * result.result().length();
+                        segment.covered.add(result.value(), result.value());
+                        added = true;
+                    }
+                }
+                if (added) {
+                    segment.version++;
+                    segment.touched = System.nanoTime();
+                    if (writer != null) {
+                        segment.dirty = true;
+                        if (segment.complete()) {
+                            pending.remove(segment);
+                            queue(segment);
+                        } else {
+                            pending.add(segment);
+                        }
+                    }
+                }
+                account(segment);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Segment avec ses résultats en mémoire, relu du disque hors verrou si besoin. Null s'il n'existe
+     * pas et que create est faux, ou s'il n'a pas pu être relu. Le segment peut ressortir de la mémoire
+     * avant que l'appelant ne reprenne le verrou ; l'éviction est laissée à l'appelant.
+     */
+    private Segment resident(Segments forKey, long number, boolean create) {
+        while (true) {
+            Segment segment;
+            Map<Path, IntervalSet.Interval> files;
+            synchronized (forKey) {
+                segment = forKey.byNumber.get(number);
+                if (segment == null) {
+                    if (!create) {
+                        return null;
+                    }
+                    segment = new Segment(forKey, number);
+                    forKey.byNumber.put(number, segment);
+                }
+                if (segment.results == null && (segment.writing != null || segment.files.isEmpty())) {
+                    segment.results = segment.writing != null ? segment.writing.clone()
+                            : new String[SEGMENT_VALUES];
+                    segment.writing = null;
+                }
+                if (segment.results != null) {
+                    account(segment);
+                    return segment;
+                }
+                files = segment.files;
+            }
+            var loaded = read(segment, files);
+            synchronized (forKey) {
+                if (segment.files != files || segment.results != null) {
+                    continue;
+                }
+                if (loaded == null) {
+                    drop(segment);
+                    if (!create) {
+                        return null;
+                    }
+                    continue;
+                }
+                segment.results = loaded;
+                segment.memoryBytes = 0;
+                for (var result : loaded) {
+                    if (result != null) {
+                        segment.memoryBytes += 64 + 2L * result.length();
+                    }
+                }
+                account(segment);
+                synchronized (lru) {
+                    onDisk.get(segment);
+                }
+                return segment;
+            }
+        }
+    }
+
+    /* Met à jour les tailles comptées du segment et le marque comme utilisé, sous le verrou du checker */
+    private void account(Segment segment) {
+        synchronized (lru) {
+            var memory = segment.results == null ? 0 : SEGMENT_VALUES * 8L + segment.memoryBytes;
+            memoryBytes += memory - segment.memoryAccounted;
+            segment.memoryAccounted = memory;
+            if (memory > 0) {
+                inMemory.put(segment, true);
+                segment.inMemory = true;
+            } else if (segment.inMemory) {
+                inMemory.remove(segment);
+                segment.inMemory = false;
+            }
+            diskBytes += segment.diskBytes - segment.diskAccounted;
+            segment.diskAccounted = segment.diskBytes;
+            if (segment.diskBytes > 0) {
+                if (!segment.onDisk) {
+                    onDisk.put(segment, true);
+                    segment.onDisk = true;
+                }
+            } else if (segment.onDisk) {
+                onDisk.remove(segment);
+                segment.onDisk = false;
+            }
+        }
+    }
+
+    /* Retire le segment du cache, sous le verrou du checker ; ses fichiers sont à supprimer par l'appelant */
+    private void drop(Segment segment) {
+        segment.owner.byNumber.remove(segment.number, segment);
+        segment.dropped = true;
+        segment.results = null;
+        segment.writing = null;
+        segment.files = Map.of();
+        segment.diskBytes = 0;
+        pending.remove(segment);
+        account(segment);
+    }
+
+    /* Sous le verrou du checker */
+    private void queue(Segment segment) {
+        if (segment.queued || !segment.dirty || segment.dropped) {
+            return;
+        }
+        segment.queued = true;
+        writer.execute(() -> write(segment));
+    }
+
+    /*
+     * Choisit les segments à évincer sous le verrou du cache puis les libère sous celui de leur
+     * checker : un segment utilisé entre-temps est gardé
+     */
+    private void evictMemory() {
+        while (true) {
+            Segment victim;
+            synchronized (lru) {
+                if (memoryBytes <= maxMemoryBytes || inMemory.isEmpty()) {
+                    return;
+                }
+                victim = inMemory.keySet().iterator().next();
+                inMemory.remove(victim);
+                victim.inMemory = false;
+                memoryBytes -= victim.memoryAccounted;
+                victim.memoryAccounted = 0;
+            }
+            synchronized (victim.owner) {
+                synchronized (lru) {
+                    if (victim.inMemory || victim.results == null) {
+                        continue;
+                    }
+                }
+                if (victim.dirty && writer != null) {
+                    victim.writing = victim.results;
+                    pending.remove(victim);
+                    queue(victim);
+                }
+                victim.results = null;
+                victim.memoryBytes = 0;
+                if (victim.writing == null && victim.files.isEmpty()) {
+                    drop(victim);
+                }
+            }
+        }
+    }
+
+    private void evictDisk() {
+        while (true) {
+            Segment victim;
+            synchronized (lru) {
+                if (diskBytes <= maxDiskBytes || onDisk.isEmpty()) {
+                    return;
+                }
+                victim = onDisk.keySet().iterator().next();
+                onDisk.remove(victim);
+                victim.onDisk = false;
+                diskBytes -= victim.diskAccounted;
+                victim.diskAccounted = 0;
+            }
+            Map<Path, IntervalSet.Interval> files;
+            synchronized (victim.owner) {
+                synchronized (lru) {
+                    if (victim.onDisk) {
+                        continue;
+                    }
+                }
+                files = victim.files;
+                if (victim.results == null && victim.writing == null) {
+                    drop(victim);
+                } else {
+                    victim.files = Map.of();
+                    victim.diskBytes = 0;
+                    victim.dirty = victim.writing != null;
+                    pending.remove(victim);
+                }
+            }
+            delete(files.keySet());
+        }
+    }
+
+    /* Écrit les suites de valeurs du segment qui n'ont pas encore de fichier, sur le thread result-cache */
+    private void write(Segment segment) {
+        var forKey = segment.owner;
+        String[] data;
+        List<IntervalSet.Interval> runs;
+        Map<Path, IntervalSet.Interval> old;
+        long version;
+        synchronized (forKey) {
+            segment.queued = false;
+            if (!segment.dirty || segment.dropped) {
+                return;
+            }
+            data = segment.results != null ? segment.results.clone() : segment.writing;
+            runs = segment.covered.intervals();
+            old = segment.files;
+            version = segment.version;
+        }
+        var keyDirectory = directory.resolve(forKey.key.hash() + "-" + forKey.key.fullyQualifiedName());
+        var files = new HashMap<Path, IntervalSet.Interval>();
+        var created = new ArrayList<Path>();
+        var written = 0L;
+        try {
+            Files.createDirectories(keyDirectory);
+            for (var run : runs) {
+                var file = keyDirectory.resolve(run.start() + "_" + run.end() + SUFFIX);
+                if (!old.containsKey(file)) {
+                    write(file, data, segment.first(), run);
+                    created.add(file);
+                }
+                files.put(file, run);
+                written += Files.size(file);
+            }
+        } catch (IOException e) {
+            logger.info("Segment de cache non écrit dans " + keyDirectory + " : " + e.getMessage());
+            delete(created);
+            return;
+        }
+        var obsolete = new ArrayList<Path>();
+        synchronized (forKey) {
+            if (segment.dropped || segment.files != old) {
+                /* Évincé du disque pendant l'écriture : les anciens fichiers n'existent plus */
+                obsolete.addAll(created);
+                if (!segment.dropped && segment.results == null) {
+                    queue(segment);
+                }
+            } else {
+                old.keySet().stream().filter(file -> !files.containsKey(file)).forEach(obsolete::add);
+                segment.files = Map.copyOf(files);
+                segment.diskBytes = written;
+                if (segment.version == version) {
+                    segment.dirty = false;
+                    segment.writing = null;
+                } else if (segment.results == null) {
+                    queue(segment);
+                }
+                account(segment);
+            }
+        }
+        delete(obsolete);
+        evictDisk();
+    }
+
+    /* Écrit la suite à côté puis la renomme, un arrêt brutal ne laisse pas de fichier tronqué */
+    private static void write(Path file, String[] data, long first, IntervalSet.Interval run) throws IOException {
+        var name = file.getFileName().toString();
+        var partial = file.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + ".part");
+        var format = new BinaryResultFormat(Files.newOutputStream(partial), BlockCodec.of("deflate"));
+        format.start(List.of());
+        for (var value = run.start(); value <= run.end(); value++) {
+            format.write(new Result(value, data[(int) (value - first)]));
+        }
+        format.finish();
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* Résultats du segment relus de ses fichiers, null si l'un d'eux est illisible */
+    private static String[] read(Segment segment, Map<Path, IntervalSet.Interval> files) {
+        var results = new String[SEGMENT_VALUES];
+        for (var file : files.entrySet()) {
+            var run = file.getValue();
+            try (var reader = BinaryResultReader.open(file.getKey())) {
+                var count = 0L;
+                for (var entry : reader.blocks()) {
+                    for (var result : reader.read(entry)) {
+                        if (result.value() < run.start() || result.value() > run.end()) {
+                            throw new IOException("value " + result.value() + " out of run");
+                        }
+                        results[(int) (result.value() - segment.first())] = result.result();
+                        count++;
+                    }
+                }
+                if (count != run.size()) {
+                    throw new IOException("incomplete run");
+                }
+            } catch (IOException e) {
+                logger.info("Segment de cache illisible " + file.getKey() + " : " + e.getMessage());
+                delete(files.keySet());
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private static void delete(Iterable<Path> files) {
+        for (var file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.info("Fichier de cache non supprimé " + file + " : " + e.getMessage());
+            }
+        }
+    }
+
+    private record Found(Key key, Path file, IntervalSet.Interval run, long size, long modified) {
+    }
+
+    private void load() throws IOException {
+        var found = new ArrayList<Found>();
+        try (var keyDirectories = Files.list(directory)) {
+            for (var keyDirectory : (Iterable<Path>) keyDirectories::iterator) {
+                var name = keyDirectory.getFileName().toString();
+                var separator = name.indexOf('-');
+                if (!Files.isDirectory(keyDirectory) || separator < 0
+                        || !JarCache.validHash(name.substring(0, separator))) {
+                    continue;
+                }
+                var key = new Key(name.substring(0, separator), name.substring(separator + 1));
+                try (var files = Files.list(keyDirectory)) {
+                    for (var file : (Iterable<Path>) files::iterator) {
+                        var run = run(file);
+                        if (run != null) {
+                            found.add(new Found(key, file, run, Files.size(file),
+                                    Files.getLastModifiedTime(file).toMillis()));
+                        }
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(Found::modified));
+        var segmentCount = 0;
+        var rejected = new ArrayList<Path>();
+        for (var file : found) {
+            var forKey = segments.computeIfAbsent(file.key(), Segments::new);
+            var number = number(file.run().start());
+            synchronized (forKey) {
+                var segment = forKey.byNumber.get(number);
+                if (number(file.run().end()) != number
+                        || segment != null && segment.covered.count(file.run().start(), file.run().end()) > 0) {
+                    rejected.add(file.file());
+                    continue;
+                }
+                if (segment == null) {
+                    segment = new Segment(forKey, number);
+                    forKey.byNumber.put(number, segment);
+                    segmentCount++;
+                }
+                var files = new HashMap<>(segment.files);
+                files.put(file.file(), file.run());
+                segment.files = Map.copyOf(files);
+                segment.diskBytes += file.size();
+                segment.covered.add(file.run());
+                account(segment);
+            }
+        }
+        delete(rejected);
+        evictDisk();
+        if (!found.isEmpty()) {
+            logger.info("Cache de résultats : " + segmentCount + " segments, " + diskBytes() + " octets sur disque");
+        }
+    }
+
+    /*
+     * Suite de valeurs décrite par le nom du fichier, null pour un autre fichier ; un .part est un reste
+     * d'arrêt brutal
+     */
+    private static IntervalSet.Interval run(Path file) throws IOException {
+        var name = file.getFileName().toString();
+        if (name.endsWith(".part")) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        if (!name.endsWith(SUFFIX)) {
+            return null;
+        }
+        var bounds = name.substring(0, name.length() - SUFFIX.length()).split("_");
+        if (bounds.length != 2) {
+            return null;
+        }
+        try {
+            var start = Long.parseLong(bounds[0]);
+            var end = Long.parseLong(bounds[1]);
+            if (end < start) {
+                return null;
+            }
+            return new IntervalSet.Interval(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
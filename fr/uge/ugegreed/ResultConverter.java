@@ -0,0 +1,40 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* Convertit un fichier de résultats binaire dans le format texte, bloc par bloc */
+public class ResultConverter {
+
+    public static void convert(Path binary, Path text) throws IOException {
+        try (var reader = BinaryResultReader.open(binary);
+             var output = Files.newOutputStream(text)) {
+            var format = new TextResultFormat(output);
+            format.start(reader.header());
+            for (var block : reader.blocks()) {
+                for (var result : reader.read(block)) {
+                    format.write(result);
+                }
+            }
+            format.finish();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("usage: java fr.uge.ugegreed.ResultConverter <binary results> <text results>");
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            usage();
+            return;
+        }
+        try {
+            convert(Path.of(args[0]), Path.of(args[1]));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
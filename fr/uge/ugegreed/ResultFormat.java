@@ -0,0 +1,67 @@
+package fr.uge.ugegreed;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/*
+ * Format d'un fichier de résultats, utilisé par le thread de ResultWriter. "text" écrit une chaîne
+ * par ligne, "binary" des blocs compressés (voir BinaryResultFormat), "ordered" les lignes de "text"
+ * dans l'ordre des valeurs (voir OrderedResultFormat), "indexed" des blocs triés que ResultStore
+ * interroge (voir IndexedResultFormat).
+ */
+public interface ResultFormat {
+    List<String> NAMES = List.of("text", "binary", OrderedResultFormat.NAME, IndexedResultFormat.NAME);
+
+    /* En-tête d'un nouveau fichier */
+    void start(List<String> header) throws IOException;
+
+    /* Reprise d'un fichier existant, déjà tronqué à offset octets */
+    void resume(Path path, long offset) throws IOException;
+
+    void write(Result result) throws IOException;
+
+    /* Group commit : écrit ce qui peut l'être dans le fichier */
+    void flush() throws IOException;
+
+    /* Nombre des derniers résultats reçus par write qui ne sont pas encore dans le fichier */
+    int buffered();
+
+    /*
+     * Valeurs arrivées dans le fichier depuis le dernier appel, ou null quand ce sont toujours les
+     * premières reçues par write, moins les buffered() dernières
+     */
+    default List<IntervalSet.Interval> written() {
+        return null;
+    }
+
+    /* Écrit tout ce qui reste puis ferme le flux */
+    void finish() throws IOException;
+
+    /* Appelé après finish, une fois le journal à jour */
+    default void cleanup() throws IOException {
+    }
+
+    /* Fichier où écrit le flux donné au format, pour les résultats de path */
+    static Path target(String name, Path path) {
+        return name.equals(OrderedResultFormat.NAME) ? OrderedResultFormat.segments(path) : path;
+    }
+
+    /* output écrit dans target(name, path), start -> end est la plage de la conjecture */
+    static ResultFormat of(String name, String codec, OutputStream output, Path path, long start, long end)
+            throws IOException {
+        switch (name) {
+            case "text":
+                return new TextResultFormat(output);
+            case "binary":
+                return new BinaryResultFormat(output, BlockCodec.of(codec));
+            case OrderedResultFormat.NAME:
+                return new OrderedResultFormat(output, path, start, end);
+            case IndexedResultFormat.NAME:
+                return new IndexedResultFormat(output, BlockCodec.of(codec), start, end);
+            default:
+                throw new IllegalArgumentException("unknown format " + name);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package fr.uge.ugegreed;
+
+/* Reçoit les résultats d'un RangeChecker, une fois par valeur et dans l'ordre croissant */
+@FunctionalInterface
+public interface ResultSink {
+    void accept(long value, String result);
+}
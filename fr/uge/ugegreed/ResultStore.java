@@ -0,0 +1,207 @@
+package fr.uge.ugegreed;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+/*
+ * Recherche dans un fichier terminé écrit par IndexedResultFormat. À l'ouverture, seuls l'en-tête et
+ * la fin du fichier sont lus : l'index creux (une entrée par bloc, rangée par première valeur) est
+ * projeté en mémoire et parcouru par dichotomie, puis seul le bloc couvrant la valeur est projeté et
+ * décodé. Avec le codec none, les résultats sont lus dans la projection, sans copie du bloc.
+ */
+public class ResultStore implements AutoCloseable {
+    private static final int ENTRY_SIZE = BinaryResultFormat.INDEX_ENTRY_SIZE;
+
+    /* Colonnes décodées d'un bloc : valeurs, tailles, et les chaînes à partir de payloads */
+    private record Columns(long[] values, int[] lengths, ByteBuffer raw, int payloads) {
+        private String result(int index) {
+            var position = payloads;
+            for (var i = 0; i < index; i++) {
+                position += lengths[i];
+            }
+            return StandardCharsets.UTF_8.decode(raw.slice(position, lengths[index])).toString();
+        }
+    }
+
+    private final Path path;
+    /* Taille et date du fichier à l'ouverture, pour voir qu'il a été réécrit */
+    private final long size;
+    private final FileTime lastModified;
+    private final FileChannel channel;
+    private final BlockCodec codec;
+    private final MappedByteBuffer index;
+    private final int blocks;
+
+    private ResultStore(Path path) throws IOException {
+        this.path = path;
+        lastModified = Files.getLastModifiedTime(path);
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var input = new DataInputStream(Channels.newInputStream(channel.position(0)));
+            if (input.readInt() != BinaryResultFormat.MAGIC || input.readByte() != BinaryResultFormat.VERSION) {
+                throw new IOException(path + " is not a binary result file");
+            }
+            codec = BlockCodec.of(input.readUTF());
+            size = channel.size();
+            if (size - BinaryResultFormat.TRAILER_SIZE < channel.position()) {
+                throw new IOException(path + " has no index, the conjecture is not finished");
+            }
+            var trailer = read(size - BinaryResultFormat.TRAILER_SIZE, BinaryResultFormat.TRAILER_SIZE);
+            var indexPosition = trailer.getLong();
+            if (trailer.getInt() != BinaryResultFormat.INDEX_MAGIC || indexPosition < 0
+                    || indexPosition > size - BinaryResultFormat.TRAILER_SIZE - Integer.BYTES * 2) {
+                throw new IOException(path + " has no index, the conjecture is not finished");
+            }
+            var indexHeader = read(indexPosition, Integer.BYTES * 2);
+            if (indexHeader.getInt() != BinaryResultFormat.INDEX_MAGIC) {
+                throw new IOException(path + " has a corrupted index");
+            }
+            blocks = indexHeader.getInt();
+            index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition + Integer.BYTES * 2,
+                    (long) blocks * ENTRY_SIZE);
+            for (var i = 1; i < blocks; i++) {
+                if (first(i) <= last(i - 1)) {
+                    throw new IOException(path + " is not an indexed result file");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static ResultStore open(Path path) throws IOException {
+        return new ResultStore(path);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /* Faux si le fichier a été supprimé ou réécrit depuis l'ouverture : il faut le rouvrir */
+    public boolean isCurrent() {
+        try {
+            return Files.size(path) == size && Files.getLastModifiedTime(path).equals(lastModified);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /* Résultat de la valeur, null si le fichier n'en a pas */
+    public String get(long value) throws IOException {
+        var block = block(value);
+        if (block < 0 || last(block) < value) {
+            return null;
+        }
+        var columns = columns(block);
+        var found = Arrays.binarySearch(columns.values(), value);
+        return found < 0 ? null : columns.result(found);
+    }
+
+    /* Donne à sink les résultats des valeurs from -> to dans l'ordre croissant, renvoie leur nombre */
+    public long range(long from, long to, ResultSink sink) throws IOException {
+        var count = 0L;
+        var block = Math.max(0, block(from));
+        for (; block < blocks && first(block) <= to; block++) {
+            if (last(block) < from) {
+                continue;
+            }
+            var columns = columns(block);
+            var values = columns.values();
+            var position = columns.payloads();
+            for (var i = 0; i < values.length && values[i] <= to; i++) {
+                var length = columns.lengths()[i];
+                if (values[i] >= from) {
+                    sink.accept(values[i],
+                            StandardCharsets.UTF_8.decode(columns.raw().slice(position, length)).toString());
+                    count++;
+                }
+                position += length;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* Dernier bloc dont la première valeur est au plus value, -1 s'il n'y en a pas */
+    private int block(long value) {
+        var low = 0;
+        var high = blocks - 1;
+        var found = -1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            if (first(middle) <= value) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private long offset(int block) {
+        return index.getLong(block * ENTRY_SIZE);
+    }
+
+    private long first(int block) {
+        return index.getLong(block * ENTRY_SIZE + Long.BYTES);
+    }
+
+    private long last(int block) {
+        return index.getLong(block * ENTRY_SIZE + Long.BYTES * 2);
+    }
+
+    private int count(int block) {
+        return index.getInt(block * ENTRY_SIZE + Long.BYTES * 3);
+    }
+
+    private Columns columns(int block) throws IOException {
+        var blockHeader = read(offset(block), BinaryResultFormat.BLOCK_HEADER_SIZE);
+        var rawLength = blockHeader.getInt();
+        var compressedLength = blockHeader.getInt();
+        ByteBuffer raw = channel.map(FileChannel.MapMode.READ_ONLY,
+                offset(block) + BinaryResultFormat.BLOCK_HEADER_SIZE, compressedLength);
+        if (!codec.name().equals("none")) {
+            var compressed = new byte[compressedLength];
+            raw.get(compressed);
+            raw = ByteBuffer.wrap(codec.decompress(compressed, rawLength));
+        }
+        var values = new long[count(block)];
+        var previous = 0L;
+        for (var i = 0; i < values.length; i++) {
+            var zigzag = BinaryResultReader.varLong(raw);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = previous;
+        }
+        var lengths = new int[values.length];
+        for (var i = 0; i < lengths.length; i++) {
+            lengths[i] = (int) BinaryResultReader.varLong(raw);
+        }
+        return new Columns(values, lengths, raw, raw.position());
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        var buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+}
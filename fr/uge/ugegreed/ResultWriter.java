@@ -0,0 +1,198 @@
+package fr.uge.ugegreed;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/*
+ * Écrivain de résultats d'une conjecture : le fichier est ouvert une seule fois, un thread dédié
+ * vide la file de lots et ne flushe qu'une fois pour tous les lots disponibles (group commit).
+ */
+public final class ResultWriter {
+    private static final Logger logger = Logger.getLogger(ResultWriter.class.getName());
+
+    /* Lot vide signalant la fermeture */
+    private static final List<Result> END = List.of();
+
+    private final Path path;
+    private final LinkedBlockingQueue<List<Result>> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingValues = new AtomicInteger();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final ResultFormat format;
+    private final Journal journal;
+    /* Valeurs écrites dans le format mais pas encore dans le journal */
+    private long[] values = new long[0];
+    private int recorded;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public ResultWriter(Path path, List<String> header) throws IOException {
+        this(path, header, null, "text", "deflate", 0, 0);
+    }
+
+    /*
+     * Avec un journal, chaque group commit y est enregistré après le flush. Si le journal a déjà
+     * de l'avancement, le fichier est tronqué à la taille qu'il a journalisée (les lignes écrites
+     * après ont été perdues côté journal et seront recalculées) et l'écriture reprend à la suite.
+     * Un fichier absent ou plus court que cette taille a perdu des valeurs journalisées : le journal
+     * est remis à zéro et tout est recalculé, journal.done() est à relire après le constructeur.
+     * Le format, le codec et la plage start -> end sont ceux de ResultFormat.of ; le fichier tronqué
+     * est celui où écrit le format (ResultFormat.target).
+     */
+    public ResultWriter(Path path, List<String> header, Journal journal, String format, String codec, long start,
+                        long end) throws IOException {
+        this.path = Objects.requireNonNull(path);
+        this.journal = journal;
+        var target = ResultFormat.target(format, path);
+        var resume = journal != null && journal.offset() > 0 && Files.exists(target)
+                && Files.size(target) >= journal.offset();
+        if (journal != null && !resume && !journal.done().isEmpty()) {
+            logger.info(target + " absent ou tronqué, les résultats journalisés sont recalculés");
+            journal.reset();
+        }
+        if (resume) {
+            try (var channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                channel.truncate(journal.offset());
+            }
+            bytesWritten.add(journal.offset());
+        }
+        var output = new FilterOutputStream(Files.newOutputStream(target, StandardOpenOption.CREATE,
+                resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytesWritten.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytesWritten.add(len);
+            }
+        };
+        this.format = ResultFormat.of(format, codec, output, path, start, end);
+        if (resume) {
+            this.format.resume(path, journal.offset());
+        } else {
+            this.format.start(header);
+        }
+        thread = new Thread(this::run, "writer-" + path.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void submit(List<Result> results) {
+        if (closed) {
+            throw new IllegalStateException("writer closed");
+        }
+        if (results.isEmpty()) {
+            return;
+        }
+        pendingValues.addAndGet(results.size());
+        queue.add(results);
+    }
+
+    /* Ne bloque pas : le fichier est fermé par le thread d'écriture une fois la file vidée */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(END);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /* Nombre de valeurs en attente d'écriture */
+    public int queueDepth() {
+        return pendingValues.get();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    private void run() {
+        var batches = new ArrayList<List<Result>>();
+        var end = false;
+        try {
+            try (journal) {
+                while (!end) {
+                    batches.add(queue.take());
+                    queue.drainTo(batches);
+                    for (var batch : batches) {
+                        if (batch == END) {
+                            end = true;
+                            continue;
+                        }
+                        for (var result : batch) {
+                            format.write(result);
+                        }
+                        record(batch);
+                        pendingValues.addAndGet(-batch.size());
+                    }
+                    batches.clear();
+                    if (end) {
+                        format.finish();
+                    } else {
+                        format.flush();
+                    }
+                    journal();
+                }
+            }
+            /* Le journal est à jour, les fichiers intermédiaires du format ne servent plus */
+            format.cleanup();
+            logger.info("Résultats écrits dans " + path + " : " + bytesWritten() + " octets");
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            logger.info("Écriture interrompue pour " + path);
+        }
+    }
+
+    /* Garde les valeurs du lot pour le journal */
+    private void record(List<Result> batch) {
+        if (journal == null) {
+            return;
+        }
+        if (values.length < recorded + batch.size()) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, recorded + batch.size()));
+        }
+        for (var result : batch) {
+            values[recorded++] = result.value();
+        }
+    }
+
+    /* Journalise les valeurs arrivées dans le fichier, celles encore gardées par le format attendent */
+    private void journal() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        var written = format.written();
+        if (written != null) {
+            recorded = 0;
+            journal.append(bytesWritten(), written);
+            return;
+        }
+        var durable = recorded - format.buffered();
+        var intervals = IntervalSet.of(values, durable);
+        System.arraycopy(values, durable, values, 0, recorded - durable);
+        recorded -= durable;
+        journal.append(bytesWritten(), intervals);
+    }
+}
@@ -0,0 +1,85 @@
+package fr.uge.ugegreed;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Résultats d'une conjecture regroupés par segments de SEGMENT_VALUES valeurs de sa plage. Un
+ * segment est rendu trié dès qu'il a toutes ses valeurs, les doublons étant déjà écartés par
+ * l'application. Utilisé par les formats qui écrivent dans l'ordre des valeurs.
+ */
+public class SegmentBuffer {
+    public static final int SEGMENT_VALUES = 4_096;
+
+    /* Segment numéro number, ses résultats triés par valeur */
+    public record Segment(long number, List<Result> results) {
+    }
+
+    private final long start;
+    private final long end;
+    private final HashMap<Long, ArrayList<Result>> segments = new HashMap<>();
+    /* Valeurs des segments rendus depuis le dernier appel à released */
+    private IntervalSet released = new IntervalSet();
+    private int buffered;
+
+    public SegmentBuffer(long start, long end) {
+        if (end < start) {
+            throw new IllegalArgumentException("empty range");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    /* Ajoute le résultat, renvoie son segment s'il est maintenant complet et null sinon */
+    public Segment add(Result result) {
+        var number = (result.value() - start) / SEGMENT_VALUES;
+        var results = segments.computeIfAbsent(number, key -> new ArrayList<>());
+        results.add(result);
+        buffered++;
+        if (results.size() < size(number)) {
+            return null;
+        }
+        segments.remove(number);
+        return release(number, results);
+    }
+
+    /* Rend les segments incomplets, dans l'ordre des numéros */
+    public List<Segment> drain() {
+        var numbers = new ArrayList<>(segments.keySet());
+        numbers.sort(null);
+        var drained = new ArrayList<Segment>(numbers.size());
+        for (var number : numbers) {
+            drained.add(release(number, segments.remove(number)));
+        }
+        return drained;
+    }
+
+    /* Nombre de résultats gardés dans des segments incomplets */
+    public int buffered() {
+        return buffered;
+    }
+
+    /* Valeurs des segments rendus depuis le dernier appel */
+    public List<IntervalSet.Interval> released() {
+        var intervals = released.intervals();
+        released = new IntervalSet();
+        return intervals;
+    }
+
+    /* Nombre de valeurs du segment, le dernier peut être plus court */
+    private long size(long number) {
+        var first = start + number * SEGMENT_VALUES;
+        return Math.min(SEGMENT_VALUES, end - first + 1);
+    }
+
+    private Segment release(long number, ArrayList<Result> results) {
+        results.sort(Comparator.comparingLong(Result::value));
+        buffered -= results.size();
+        for (var result : results) {
+            released.add(result.value(), result.value());
+        }
+        return new Segment(number, results);
+    }
+}
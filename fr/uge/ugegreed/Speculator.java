@@ -0,0 +1,150 @@
+package fr.uge.ugegreed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Ré-exécution spéculative des plages en retard. Les plages terminées donnent un temps par valeur
+ * dont on garde la médiane sur une fenêtre glissante ; une plage envoyée depuis plus de SLOW_FACTOR
+ * fois le temps médian attendu pour sa taille, et depuis au moins MIN_DELAY, est en retard. Une copie
+ * de ce qu'il en reste part alors vers un pair inactif, dans la limite de budget copies en cours.
+ * Le premier des deux à rendre tous les résultats de la copie gagne, l'autre est annulé.
+ * Tenu par le thread principal, C est le type des connexions.
+ */
+public class Speculator<C> {
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 8;
+    private static final double SLOW_FACTOR = 3;
+    private static final long MIN_DELAY = 1_000_000_000L;
+
+    /* Valeurs d'une plage en retard confiées à la fois à original et à copy */
+    public static final class Speculation<C> {
+        private final C original;
+        private final C copy;
+        private final List<FrameConjecture> ranges;
+        private final IntervalSet remaining = new IntervalSet();
+
+        private Speculation(C original, C copy, List<FrameConjecture> ranges) {
+            this.original = original;
+            this.copy = copy;
+            this.ranges = List.copyOf(ranges);
+            for (var range : ranges) {
+                remaining.add(range.start(), range.end());
+            }
+        }
+
+        public C original() {
+            return original;
+        }
+
+        public C copy() {
+            return copy;
+        }
+
+        public List<FrameConjecture> ranges() {
+            return ranges;
+        }
+
+        /* L'autre connexion de la spéculation */
+        public C other(C peer) {
+            return peer == original ? copy : original;
+        }
+
+        private boolean concerns(int src, int id) {
+            var range = ranges.get(0);
+            return range.src() == src && range.id() == id;
+        }
+    }
+
+    private final int budget;
+    private final double[] samples = new double[WINDOW];
+    private int sampleCount;
+    private int next;
+    private final ArrayList<Speculation<C>> active = new ArrayList<>();
+
+    public Speculator(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget must be positive or zero");
+        }
+        this.budget = budget;
+    }
+
+    /* Une plage de values valeurs a été entièrement calculée en nanos */
+    public void sample(long nanos, long values) {
+        samples[next] = (double) nanos / values;
+        next = (next + 1) % WINDOW;
+        sampleCount = Math.min(sampleCount + 1, WINDOW);
+    }
+
+    /* Temps médian par valeur en nanosecondes, 0 sans assez de mesures */
+    public double median() {
+        if (sampleCount < MIN_SAMPLES) {
+            return 0;
+        }
+        var sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[sampleCount / 2];
+    }
+
+    /* Retard d'une plage en multiples du temps attendu, 0 si elle n'est pas en retard */
+    public double lateness(long elapsed, long values, double median) {
+        if (median == 0 || elapsed < MIN_DELAY) {
+            return 0;
+        }
+        var lateness = elapsed / (median * values);
+        return lateness > SLOW_FACTOR ? lateness : 0;
+    }
+
+    public boolean available() {
+        return active.size() < budget;
+    }
+
+    public Speculation<C> start(C original, C copy, List<FrameConjecture> ranges) {
+        Objects.requireNonNull(original);
+        Objects.requireNonNull(copy);
+        if (ranges.isEmpty()) {
+            throw new IllegalArgumentException("nothing to speculate");
+        }
+        var speculation = new Speculation<>(original, copy, ranges);
+        active.add(speculation);
+        return speculation;
+    }
+
+    public List<Speculation<C>> involving(C peer) {
+        var list = new ArrayList<Speculation<C>>();
+        for (var speculation : active) {
+            if (speculation.original == peer || speculation.copy == peer) {
+                list.add(speculation);
+            }
+        }
+        return list;
+    }
+
+    /* Résultats arrivés par peer : renvoie les spéculations qu'ils terminent, peer les a gagnées */
+    public List<Speculation<C>> acknowledge(C peer, int src, int id, List<Result> results) {
+        var finished = new ArrayList<Speculation<C>>();
+        for (var iterator = active.iterator(); iterator.hasNext();) {
+            var speculation = iterator.next();
+            if ((speculation.original != peer && speculation.copy != peer) || !speculation.concerns(src, id)) {
+                continue;
+            }
+            for (var result : results) {
+                speculation.remaining.remove(result.value(), result.value());
+            }
+            if (speculation.remaining.isEmpty()) {
+                iterator.remove();
+                finished.add(speculation);
+            }
+        }
+        return finished;
+    }
+
+    /* La connexion est perdue : ses spéculations s'arrêtent, l'autre copie continue seule */
+    public List<Speculation<C>> forget(C peer) {
+        var list = involving(peer);
+        active.removeAll(list);
+        return list;
+    }
+}
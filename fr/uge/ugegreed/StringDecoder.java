@@ -0,0 +1,76 @@
+package fr.uge.ugegreed;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Décodage par accès absolus des chaînes (int taille + octets UTF-8) d'une trame complète.
+ * La dernière chaîne décodée est réutilisée tant que ses octets ne changent pas, ce qui évite
+ * de recréer le chemin du jar ou le nom du fichier à chaque trame.
+ */
+public class StringDecoder {
+    /* Valeurs renvoyées par end() */
+    public static final int INCOMPLETE = -1;
+    public static final int INVALID = -2;
+
+    private byte[] bytes = new byte[256];
+    private int length = -1;
+    private String last;
+
+    /* Position qui suit la chaîne commençant à offset, INCOMPLETE ou INVALID */
+    public static int end(ByteBuffer bb, int offset) {
+        if (bb.limit() - offset < Integer.BYTES) {
+            return INCOMPLETE;
+        }
+        var size = bb.getInt(offset);
+        if (size < 0 || size > StringReader.MAX_SIZE) {
+            return INVALID;
+        }
+        if (bb.limit() - offset - Integer.BYTES < size) {
+            return INCOMPLETE;
+        }
+        return offset + Integer.BYTES + size;
+    }
+
+    /* Statut de lecture correspondant à une position INCOMPLETE ou INVALID */
+    public static Reader.ProcessStatus statusOf(int end) {
+        return end == INVALID ? Reader.ProcessStatus.ERROR : Reader.ProcessStatus.REFILL;
+    }
+
+    /* Chaîne commençant à offset, déjà vérifiée par end() */
+    public String decode(ByteBuffer bb, int offset) {
+        var size = bb.getInt(offset);
+        var start = offset + Integer.BYTES;
+        if (size == length && sameBytes(bb, start, size)) {
+            return last;
+        }
+        copy(bb, start, size);
+        length = size;
+        last = new String(bytes, 0, size, StandardCharsets.UTF_8);
+        return last;
+    }
+
+    /* Comme decode, pour des chaînes qui ne se répètent pas */
+    public String decodeUnique(ByteBuffer bb, int offset) {
+        var size = bb.getInt(offset);
+        copy(bb, offset + Integer.BYTES, size);
+        length = -1;
+        return new String(bytes, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private boolean sameBytes(ByteBuffer bb, int start, int size) {
+        for (var i = 0; i < size; i++) {
+            if (bb.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copy(ByteBuffer bb, int start, int size) {
+        if (bytes.length < size) {
+            bytes = new byte[Math.max(size, bytes.length * 2)];
+        }
+        bb.get(start, bytes, 0, size);
+    }
+}
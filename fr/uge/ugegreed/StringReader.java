@@ -5,6 +5,9 @@ import java.nio.charset.StandardCharsets;
 
 public class StringReader implements Reader<String> {
 
+    /* Taille max d'une chaîne en octets */
+    public static final int MAX_SIZE = 1_024 * 1_024;
+
     private enum State {
         DONE, WAITING, ERROR
     };
@@ -13,7 +16,7 @@ public class StringReader implements Reader<String> {
     private final IntReader intReader = new IntReader();
     private State stateInt = State.WAITING;
     private int size;
-    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private ByteBuffer buffer = ByteBuffer.allocate(1_024); // grandit jusqu'à MAX_SIZE
     private String texte;
 
     @Override
@@ -31,10 +34,13 @@ public class StringReader implements Reader<String> {
             } else {
                 stateInt = State.DONE;
                 size = intReader.get();
-                if (size < 0 || size > 1024) {
+                if (size < 0 || size > MAX_SIZE) {
                     stateString = State.ERROR;
                     return ProcessStatus.ERROR;
                 }
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+                }
             }
         }
         if (bb.position() < size) {
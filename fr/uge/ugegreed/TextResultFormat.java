@@ -0,0 +1,52 @@
+package fr.uge.ugegreed;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/* Format historique : l'en-tête puis une chaîne de résultat par ligne */
+public class TextResultFormat implements ResultFormat {
+    private final BufferedWriter writer;
+
+    public TextResultFormat(OutputStream output) {
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void start(List<String> header) throws IOException {
+        for (var line : header) {
+            writer.write(line);
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public void resume(Path path, long offset) {
+        /* Les lignes sont indépendantes, rien à relire */
+    }
+
+    @Override
+    public void write(Result result) throws IOException {
+        writer.write(result.result());
+        writer.newLine();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public int buffered() {
+        return 0;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.close();
+    }
+}